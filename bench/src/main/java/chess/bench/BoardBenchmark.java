@@ -0,0 +1,87 @@
+package chess.bench;
+
+import chess.Board;
+import chess.Moves;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BoardBenchmark.java
+ * Throughput of the Board hot paths used at every search node.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    @Param({"start", "middlegame"})
+    public String position;
+
+    private Board board;
+    private final int[] buffer = new int[Moves.MAX_MOVES];
+    private int[] moves;
+    private int count;
+
+    @Setup
+    public void setUp() {
+        board = Positions.named(position);
+        moves = new int[Moves.MAX_MOVES];
+        count = board.generateMoves(moves);
+    }
+
+    @Benchmark
+    public int generateMoves() {
+        return board.generateMoves(buffer);
+    }
+
+    /** Makes and takes back every move of the position once. */
+    @Benchmark
+    public long makeUnmakeAll() {
+        long keys = 0L;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            keys ^= board.getZobristKey();
+            board.unmakeMove(moves[i]);
+        }
+        return keys;
+    }
+
+    /** Asks whether each of the 64 squares is attacked by the side not to move. */
+    @Benchmark
+    public int isSquareAttackedAll() {
+        boolean byWhite = !board.isWhiteToMove();
+        int attacked = 0;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                if (board.isSquareAttacked(r, c, byWhite)) attacked++;
+            }
+        }
+        return attacked;
+    }
+
+    /** Full evaluation; the pawn terms come from the thread's pawn table after the first call. */
+    @Benchmark
+    public int evaluate() {
+        return board.evaluate();
+    }
+
+    /** Material and piece-square tables only, the baseline for the cost of the pawn terms. */
+    @Benchmark
+    public int evaluateMaterial() {
+        return board.evaluateMaterial();
+    }
+}
@@ -0,0 +1,125 @@
+package chess.bench;
+
+import chess.Board;
+import chess.Moves;
+import chess.Nnue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NnueBenchmark.java
+ * Evaluations per second of the NNUE network against the hand-written evaluation, and what
+ * keeping its accumulators costs make/unmake. Each benchmark runs in a fork with the Vector API
+ * module and in one forced onto the scalar loops (the *Scalar benchmarks); the network is the
+ * piece-square one (see Nnue.pieceSquareNetwork) at the given hidden size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class NnueBenchmark {
+
+    private static final String SCALAR = "-Dchess.nnueScalar=true";
+
+    @Param({"start", "middlegame"})
+    public String position;
+
+    @Param({"128", "256", "512"})
+    public int hidden;
+
+    private Board plain;
+    private Board board;
+    private int[] moves;
+    private int count;
+
+    @Setup
+    public void setUp() {
+        plain = Positions.named(position);
+        board = Positions.named(position);
+        board.setNetwork(Nnue.pieceSquareNetwork(hidden));
+        moves = new int[Moves.MAX_MOVES];
+        count = board.generateMoves(moves);
+    }
+
+    /** Hand-written evaluation with the pawn terms, the baseline. */
+    @Benchmark
+    public int evaluate() {
+        return plain.evaluate();
+    }
+
+    @Benchmark
+    public int evaluateNnue() {
+        return board.evaluateNnue();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", SCALAR})
+    public int evaluateNnueScalar() {
+        return board.evaluateNnue();
+    }
+
+    /** Makes and takes back every move without a network, the baseline. */
+    @Benchmark
+    public long makeUnmakeAll() {
+        return makeUnmakeAll(plain);
+    }
+
+    /** Makes and takes back every move, updating the accumulators each time. */
+    @Benchmark
+    public long makeUnmakeAllNnue() {
+        return makeUnmakeAll(board);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", SCALAR})
+    public long makeUnmakeAllNnueScalar() {
+        return makeUnmakeAll(board);
+    }
+
+    /** A leaf's work with the hand-written evaluation: make each move, evaluate, unmake. */
+    @Benchmark
+    public long makeEvaluateUnmakeAll() {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            plain.makeMove(moves[i]);
+            sum += plain.evaluate();
+            plain.unmakeMove(moves[i]);
+        }
+        return sum;
+    }
+
+    /** The same with the network, accumulator updates included. */
+    @Benchmark
+    public long makeEvaluateUnmakeAllNnue() {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            sum += board.evaluateNnue();
+            board.unmakeMove(moves[i]);
+        }
+        return sum;
+    }
+
+    private long makeUnmakeAll(Board target) {
+        long keys = 0L;
+        for (int i = 0; i < count; i++) {
+            target.makeMove(moves[i]);
+            keys ^= target.getZobristKey();
+            target.unmakeMove(moves[i]);
+        }
+        return keys;
+    }
+}
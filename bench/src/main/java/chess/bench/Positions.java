@@ -0,0 +1,38 @@
+package chess.bench;
+
+import chess.Board;
+import chess.Game;
+import chess.Move;
+
+/**
+ * Positions.java
+ * Named positions used by the benchmarks, reached by playing coordinate moves from the start.
+ */
+public final class Positions {
+
+    /** Italian game after both sides have castled: a typical quiet middlegame. */
+    private static final String MIDDLEGAME = "e2e4 e7e5 g1f3 b8c6 f1c4 g8f6 d2d3 f8c5 c2c3 d7d6 e1g1 e8g8";
+
+    private Positions() {
+    }
+
+    public static Board named(String name) {
+        return switch (name) {
+            case "start" -> new Board();
+            case "middlegame" -> play(MIDDLEGAME);
+            default -> throw new IllegalArgumentException("Unknown position: " + name);
+        };
+    }
+
+    private static Board play(String moves) {
+        Game game = new Game();
+        for (String moveStr : moves.split(" ")) {
+            Move move = game.parseMove(moveStr);
+            if (move == null || !game.getBoard().isMoveLegal(move, game.getBoard().isWhiteToMove())) {
+                throw new IllegalStateException("Illegal move in benchmark position: " + moveStr);
+            }
+            game.getBoard().makeMove(move);
+        }
+        return game.getBoard();
+    }
+}
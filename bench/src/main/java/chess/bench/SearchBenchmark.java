@@ -0,0 +1,62 @@
+package chess.bench;
+
+import chess.Board;
+import chess.ChessAI;
+import chess.Move;
+import chess.TranspositionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SearchBenchmark.java
+ * Time to reach a fixed depth with ChessAI.findBestMove, starting from an empty
+ * transposition table each time. The threads parameter measures Lazy SMP scaling.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+    @Param({"start", "middlegame"})
+    public String position;
+
+    @Param({"4", "5", "6"})
+    public int depth;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Board board;
+    private ChessAI ai;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = Positions.named(position);
+        ai = new ChessAI(new TranspositionTable(), threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        ai.getTable().clear();
+    }
+
+    @Benchmark
+    public Move findBestMove() {
+        return ai.findBestMove(board, depth);
+    }
+}
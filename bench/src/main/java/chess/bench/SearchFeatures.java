@@ -0,0 +1,69 @@
+package chess.bench;
+
+import chess.Board;
+import chess.ChessAI;
+import chess.SearchLimits;
+import chess.TranspositionTable;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * SearchFeatures.java
+ * Measures what each search technique is worth: for every benchmark position, searches to a
+ * fixed depth (nodes and time needed) and for a fixed time (depth reached) with all techniques
+ * on, with each one switched off in turn, and with all of them off.
+ *
+ * Usage: java -cp bench/target/benchmarks.jar chess.bench.SearchFeatures [depth] [movetimeMillis]   (default 8, 1000)
+ */
+public final class SearchFeatures {
+
+    private record Config(String name, Consumer<ChessAI> setup) {
+    }
+
+    private static final List<Config> CONFIGS = List.of(
+            new Config("all", ai -> { }),
+            new Config("no quiescence", ai -> ai.setQuiescence(false)),
+            new Config("no null move", ai -> ai.setNullMovePruning(false)),
+            new Config("no LMR", ai -> ai.setLateMoveReductions(false)),
+            new Config("no PVS", ai -> ai.setPrincipalVariationSearch(false)),
+            new Config("no aspiration", ai -> ai.setAspirationWindows(false)),
+            new Config("none", ai -> {
+                ai.setQuiescence(false);
+                ai.setNullMovePruning(false);
+                ai.setLateMoveReductions(false);
+                ai.setPrincipalVariationSearch(false);
+                ai.setAspirationWindows(false);
+            }));
+
+    private SearchFeatures() {
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        long moveTime = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        // Warm up first, so the JIT has compiled the search before anything is measured.
+        for (Config config : CONFIGS) {
+            ChessAI ai = new ChessAI(new TranspositionTable(), 1);
+            config.setup().accept(ai);
+            ai.findBestMove(Positions.named("middlegame"), SearchLimits.moveTime(500));
+        }
+        for (String position : List.of("start", "middlegame")) {
+            System.out.printf("%s: depth %d | %d ms%n", position, depth, moveTime);
+            for (Config config : CONFIGS) {
+                ChessAI ai = new ChessAI(new TranspositionTable(), 1);
+                config.setup().accept(ai);
+                long start = System.nanoTime();
+                ai.findBestMove(Positions.named(position), SearchLimits.depth(depth));
+                long elapsed = System.nanoTime() - start;
+                long fixedDepthNodes = ai.getNodes();
+
+                ai.getTable().clear();
+                Board board = Positions.named(position);
+                ai.findBestMove(board, SearchLimits.moveTime(moveTime));
+                System.out.printf("  %-14s %,12d nodes %8.1f ms | depth %2d, %,12d nodes%n",
+                        config.name(), fixedDepthNodes, elapsed / 1e6, ai.getCompletedDepth(), ai.getNodes());
+            }
+        }
+    }
+}
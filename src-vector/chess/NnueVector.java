@@ -0,0 +1,66 @@
+package chess;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * NnueVector.java
+ * The Vector API kernels of Nnue: accumulator column updates and the clipped dot product,
+ * on the widest vectors the CPU has, with a scalar loop for any remainder.
+ * It lives in its own source root, as compiling it needs --add-modules jdk.incubator.vector;
+ * the engine in src builds without it. Nnue loads the class by name when the module is
+ * present at run time (see Nnue.VECTORIZED), and uses its plain loops if the class is missing.
+ */
+final class NnueVector implements Nnue.Kernels {
+
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    // Same vector width, so half the lanes: each short vector widens into two of these
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(short[] accumulator, short[] weights, int column, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, i)
+                    .add(ShortVector.fromArray(SHORTS, weights, column + i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) accumulator[i] += weights[column + i];
+    }
+
+    @Override
+    public void subtract(short[] accumulator, short[] weights, int column, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, i)
+                    .sub(ShortVector.fromArray(SHORTS, weights, column + i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) accumulator[i] -= weights[column + i];
+    }
+
+    @Override
+    public int dot(short[] accumulator, short[] weights, int offset, int length) {
+        ShortVector zero = ShortVector.zero(SHORTS);
+        ShortVector ceiling = ShortVector.broadcast(SHORTS, (short) Nnue.QA);
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector clipped = ShortVector.fromArray(SHORTS, accumulator, i).max(zero).min(ceiling);
+            ShortVector w = ShortVector.fromArray(SHORTS, weights, offset + i);
+            // A clipped value times a weight does not fit in a short, so both halves are widened first.
+            for (int part = 0; part < 2; part++) {
+                IntVector a = (IntVector) clipped.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector b = (IntVector) w.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(a.mul(b));
+            }
+        }
+        int total = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            total += Math.min(Math.max(accumulator[i], 0), Nnue.QA) * weights[offset + i];
+        }
+        return total;
+    }
+}
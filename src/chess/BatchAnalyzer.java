@@ -0,0 +1,240 @@
+package chess;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * BatchAnalyzer.java
+ * Analyzes a set of positions given as EPD (or FEN) lines, in parallel on a worker pool, with
+ * the same depth or time limit for every position. Input is read and results are written one
+ * line at a time, in input order: only a window of a few positions per worker is in flight,
+ * so a set of any size runs in constant memory.
+ * Each worker thread has its own single-threaded ChessAI and transposition table.
+ * EPD operations "id" and "bm"/"am" (best/avoid moves, in SAN) are read; with bm or am the
+ * result says whether the engine solved the position.
+ *
+ * Usage: java -cp <classes> chess.BatchAnalyzer <positions.epd | -> [depth=N | movetime=MS] [threads=N]   (default depth=8, one thread per core)
+ * Results go to stdout as one JSON object per line; the throughput goes to stderr.
+ */
+public class BatchAnalyzer {
+
+    /** Transposition table size per worker thread, configurable with -Dchess.analysisHashMb=N. */
+    public static final int ANALYSIS_HASH_MB = Integer.getInteger("chess.analysisHashMb", 16);
+    // Positions queued or running per worker, so results can be written in order without stalling the pool
+    private static final int WINDOW_PER_THREAD = 4;
+
+    private static final ThreadLocal<ChessAI> WORKER_AI =
+            ThreadLocal.withInitial(() -> new ChessAI(new TranspositionTable(ANALYSIS_HASH_MB), 1));
+
+    /**
+     * One analyzed position. line is the 1-based input line; score is in centipawns and mate in
+     * moves, as UCI reports them (see ChessAI.centipawns and mateInMoves), both from the side to
+     * move's point of view, and only one is set. solved is null unless the line had bm or am;
+     * error is set (and the rest empty) if the line could not be read.
+     */
+    public record Result(int line, String id, String fen, String bestMove, Integer score, Integer mate, Integer depth,
+                         Long nodes, Long millis, Boolean solved, String error) {
+    }
+
+    /** Totals of one run. */
+    public record Summary(long positions, long errors, long millis, double positionsPerSecond) {
+    }
+
+    private final ExecutorService pool;
+    private final int window;
+    private final SearchLimits limits;
+
+    /** Analyzes on the given pool, which should have threads workers. */
+    public BatchAnalyzer(ExecutorService pool, int threads, SearchLimits limits) {
+        this.pool = pool;
+        this.window = Math.max(1, threads) * WINDOW_PER_THREAD;
+        this.limits = limits;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java chess.BatchAnalyzer <positions.epd | -> [depth=N | movetime=MS] [threads=N]");
+            System.exit(2);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length != 2) {
+                System.err.println("Expected name=value, got " + args[i]);
+                System.exit(2);
+            }
+            options.put(option[0], option[1]);
+        }
+        if (options.containsKey("threads")) threads = Integer.parseInt(options.get("threads"));
+        SearchLimits limits = parseLimits(options.get("depth"), options.get("movetime"));
+
+        ExecutorService pool = newPool(threads);
+        Gson gson = new Gson();
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        try (BufferedReader in = args[0].equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(args[0]))) {
+            Summary summary = new BatchAnalyzer(pool, threads, limits).analyze(in, result -> out.println(gson.toJson(result)));
+            out.flush();
+            System.err.printf("%,d positions (%,d unreadable) in %.1f s: %.1f positions/s on %d threads%n",
+                    summary.positions(), summary.errors(), summary.millis() / 1000.0, summary.positionsPerSecond(), threads);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** A daemon worker pool for analysis. */
+    public static ExecutorService newPool(int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "chess-analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Per-position limits from the depth and movetime options (either may be null); depth 8 if
+     * neither is given.
+     *
+     * @throws IllegalArgumentException if a value is not a positive number or depth is too large
+     */
+    public static SearchLimits parseLimits(String depth, String moveTime) {
+        try {
+            int d = depth == null ? (moveTime == null ? 8 : SearchLimits.MAX_DEPTH) : Integer.parseInt(depth);
+            long ms = moveTime == null ? 0 : Long.parseLong(moveTime);
+            if (d < 1 || d > SearchLimits.MAX_DEPTH || ms < 0) {
+                throw new IllegalArgumentException("Invalid limits: depth=" + depth + ", movetime=" + moveTime);
+            }
+            return new SearchLimits(d, ms, 0);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limits: depth=" + depth + ", movetime=" + moveTime, e);
+        }
+    }
+
+    /**
+     * Reads positions until the end of the input and passes each result to out, in input order,
+     * from the calling thread. Blank lines and lines starting with '#' are skipped.
+     */
+    public Summary analyze(BufferedReader in, Consumer<Result> out) throws IOException {
+        long start = System.nanoTime();
+        ArrayDeque<CompletableFuture<Result>> inFlight = new ArrayDeque<>();
+        long positions = 0, errors = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            int number = lineNumber;
+            inFlight.add(CompletableFuture.supplyAsync(() -> analyzeLine(number, trimmed), pool));
+            if (inFlight.size() >= window) {
+                Result result = inFlight.poll().join();
+                positions++;
+                if (result.error() != null) errors++;
+                out.accept(result);
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            Result result = inFlight.poll().join();
+            positions++;
+            if (result.error() != null) errors++;
+            out.accept(result);
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        return new Summary(positions, errors, millis, positions * 1000.0 / millis);
+    }
+
+    private Result analyzeLine(int lineNumber, String line) {
+        Board board;
+        Map<String, String> operations;
+        try {
+            String[] fields = line.split("\\s+", 7);
+            if (fields.length < 4) throw new IllegalArgumentException("Expected at least 4 fields");
+            // A FEN line has the two move counters after the first four fields; an EPD line has operations.
+            int fenFields = fields.length >= 6 && fields[4].matches("\\d+") && fields[5].matches("\\d+") ? 6 : 4;
+            board = Board.fromFen(String.join(" ", Arrays.copyOf(fields, fenFields)));
+            operations = fields.length > fenFields
+                    ? parseOperations(line.split("\\s+", fenFields + 1)[fenFields])
+                    : Map.of();
+        } catch (IllegalArgumentException e) {
+            return new Result(lineNumber, null, null, null, null, null, null, null, null, null, e.getMessage());
+        }
+
+        ChessAI ai = WORKER_AI.get();
+        SearchProgress[] last = new SearchProgress[1];
+        long start = System.nanoTime();
+        Move best = ai.findBestMove(board, limits, progress -> last[0] = progress);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        int bestMove = best == null ? Moves.NONE : board.findLegalMove(best, board.isWhiteToMove());
+        Boolean solved = null;
+        if (bestMove != Moves.NONE && (operations.containsKey("bm") || operations.containsKey("am"))) {
+            int key = Moves.key(bestMove);
+            solved = (!operations.containsKey("bm") || containsMove(board, operations.get("bm"), key))
+                    && (!operations.containsKey("am") || !containsMove(board, operations.get("am"), key));
+        }
+        Integer score = null, mate = null;
+        if (last[0] != null) {
+            int moves = ChessAI.mateInMoves(last[0].score());
+            if (moves != 0) {
+                mate = moves;
+            } else {
+                score = ChessAI.centipawns(last[0].score());
+            }
+        }
+        return new Result(lineNumber, operations.get("id"), board.toFen(),
+                bestMove == Moves.NONE ? null : Moves.toString(bestMove),
+                score, mate, ai.getCompletedDepth(), ai.getNodes(), millis, solved, null);
+    }
+
+    /** True if one of the space-separated SAN moves is the move with this key. */
+    private static boolean containsMove(Board board, String sanMoves, int key) {
+        for (String san : sanMoves.trim().split("\\s+")) {
+            int move = Moves.fromSan(board, san);
+            if (move != Moves.NONE && Moves.key(move) == key) return true;
+        }
+        return false;
+    }
+
+    /** EPD operations: "opcode operand...;" each, with operands in double quotes kept whole. */
+    private static Map<String, String> parseOperations(String text) {
+        Map<String, String> operations = new HashMap<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (char c : text.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ';' && !quoted) {
+                addOperation(operations, current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        addOperation(operations, current.toString());
+        return operations;
+    }
+
+    private static void addOperation(Map<String, String> operations, String operation) {
+        String trimmed = operation.trim();
+        if (trimmed.isEmpty()) return;
+        String[] parts = trimmed.split("\\s+", 2);
+        operations.put(parts[0], parts.length > 1 ? parts[1] : "");
+    }
+}
@@ -0,0 +1,262 @@
+package chess;
+
+/**
+ * Bitbases.java
+ * Exact win/draw tables for king and queen, king and rook, and king and pawn against a lone
+ * king (KQK, KRK, KPK), generated once at class load by retrograde analysis.
+ * A position is indexed by side to move, strong king, strong piece and weak king square
+ * (2 * 64 * 64 * 64 = 2^19 positions), and only one bit is kept per position: set if the
+ * strong side wins. Each table is a 64 KB long[]; there is no distance to mate.
+ * The strong side is always stored as White; a position where Black has the extra piece is
+ * probed with the board flipped vertically and the side to move swapped.
+ * Generation works backwards from the final positions (mate, stalemate, capture of the
+ * last piece): passes over all undecided positions repeat until none changes, and whatever
+ * is still undecided then is a draw. KPK is built last, so a promotion can look up its
+ * result in the KQK and KRK tables.
+ */
+public final class Bitbases {
+
+    // probe results, from the point of view of the side to move
+    public static final int LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+    public static final int NOT_COVERED = 2;
+
+    private static final int POSITIONS = 1 << 19;
+    private static final Piece[] PIECES = Piece.values();
+
+    // Generation states
+    private static final byte UNKNOWN = 0;
+    private static final byte DRAWN = 1;
+    private static final byte WON = 2;
+    private static final byte INVALID = 3;
+
+    private static final long[] KQK;
+    private static final long[] KRK;
+    private static final long[] KPK;
+    private static final long GENERATION_NANOS;
+
+    static {
+        long start = System.nanoTime();
+        KQK = generate(Piece.WHITE_QUEEN);
+        KRK = generate(Piece.WHITE_ROOK);
+        KPK = generate(Piece.WHITE_PAWN);
+        GENERATION_NANOS = System.nanoTime() - start;
+    }
+
+    private Bitbases() {
+    }
+
+    /** Time taken to generate all tables, in milliseconds. */
+    public static long generationMillis() {
+        return GENERATION_NANOS / 1_000_000;
+    }
+
+    /** Memory held by the tables, in bytes. */
+    public static long memoryBytes() {
+        return (long) (KQK.length + KRK.length + KPK.length) * Long.BYTES;
+    }
+
+    public static String describe() {
+        return String.format("Endgame bitbases KQK, KRK, KPK: generated in %d ms, %d KB",
+                generationMillis(), memoryBytes() / 1024);
+    }
+
+    /**
+     * The exact result of the position for the side to move, or NOT_COVERED if it is not a
+     * bitbase endgame. Two bare kings are a draw.
+     */
+    public static int probe(Board board) {
+        long occupied = board.getOccupied();
+        int count = Long.bitCount(occupied);
+        if (count == 2) return DRAW;
+        if (count != 3) return NOT_COVERED;
+
+        long whiteKing = board.getBitboard(Piece.WHITE_KING);
+        long blackKing = board.getBitboard(Piece.BLACK_KING);
+        if (whiteKing == 0L || blackKing == 0L) return NOT_COVERED;
+        int other = Long.numberOfTrailingZeros(occupied & ~whiteKing & ~blackKing);
+        boolean whiteStrong = board.getPiece(other >>> 3, other & 7).isWhite();
+        int offset = whiteStrong ? 0 : 6;
+        long[] table;
+        long piece;
+        if ((piece = board.getBitboard(PIECES[Piece.WHITE_QUEEN.ordinal() + offset])) != 0L) {
+            table = KQK;
+        } else if ((piece = board.getBitboard(PIECES[Piece.WHITE_ROOK.ordinal() + offset])) != 0L) {
+            table = KRK;
+        } else if ((piece = board.getBitboard(PIECES[Piece.WHITE_PAWN.ordinal() + offset])) != 0L) {
+            table = KPK;
+        } else {
+            return DRAW; // a lone minor piece cannot mate
+        }
+        int strongKing = Long.numberOfTrailingZeros(whiteStrong ? whiteKing : blackKing);
+        int weakKing = Long.numberOfTrailingZeros(whiteStrong ? blackKing : whiteKing);
+        int pieceSq = Long.numberOfTrailingZeros(piece);
+        boolean strongToMove = board.isWhiteToMove() == whiteStrong;
+        if (!whiteStrong) {
+            // Mirror ranks so the strong side plays up the board as White does.
+            strongKing ^= 56;
+            weakKing ^= 56;
+            pieceSq ^= 56;
+        }
+        int index = index(strongToMove ? 0 : 1, strongKing, pieceSq, weakKing);
+        if ((table[index >>> 6] & (1L << index)) == 0L) return DRAW;
+        return strongToMove ? WIN : LOSS;
+    }
+
+    /**
+     * How far the strong side has come in a won bitbase position, for ordering wins that the
+     * search cannot yet see to the end: the weak king driven to the edge and the kings close
+     * together, or the pawn advanced. Larger is better for the strong side.
+     */
+    public static int progress(Board board) {
+        long pawns = board.getBitboard(Piece.WHITE_PAWN) | board.getBitboard(Piece.BLACK_PAWN);
+        if (pawns != 0L) {
+            int pawn = Long.numberOfTrailingZeros(pawns);
+            int row = pawn >>> 3;
+            return 20 * ((pawns & board.getBitboard(Piece.WHITE_PAWN)) != 0L ? 7 - row : row);
+        }
+        long whiteStrong = board.getBitboard(Piece.WHITE_QUEEN) | board.getBitboard(Piece.WHITE_ROOK);
+        int strongKing = Long.numberOfTrailingZeros(board.getBitboard(whiteStrong != 0L ? Piece.WHITE_KING : Piece.BLACK_KING));
+        int weakKing = Long.numberOfTrailingZeros(board.getBitboard(whiteStrong != 0L ? Piece.BLACK_KING : Piece.WHITE_KING));
+        int weakRow = weakKing >>> 3, weakCol = weakKing & 7;
+        int centreDistance = Math.max(3 - weakRow, weakRow - 4) + Math.max(3 - weakCol, weakCol - 4);
+        int kingDistance = Math.max(Math.abs(weakRow - (strongKing >>> 3)), Math.abs(weakCol - (strongKing & 7)));
+        return 20 * centreDistance + 10 * (7 - kingDistance);
+    }
+
+    private static int index(int sideToMove, int strongKing, int piece, int weakKing) {
+        return (sideToMove << 18) | (strongKing << 12) | (piece << 6) | weakKing;
+    }
+
+    private static long[] generate(Piece piece) {
+        byte[] state = new byte[POSITIONS];
+        for (int index = 0; index < POSITIONS; index++) {
+            state[index] = isValid(piece, index) ? UNKNOWN : INVALID;
+        }
+        // Each pass only revisits the positions still undecided after the last one.
+        int[] undecided = new int[POSITIONS];
+        int count = 0;
+        for (int index = 0; index < POSITIONS; index++) {
+            if (state[index] == UNKNOWN) undecided[count++] = index;
+        }
+        int previous = -1;
+        while (count != previous) {
+            previous = count;
+            count = 0;
+            for (int i = 0; i < previous; i++) {
+                int index = undecided[i];
+                byte result = (index >>> 18) == 0 ? strongToMove(piece, state, index) : weakToMove(piece, state, index);
+                if (result == UNKNOWN) {
+                    undecided[count++] = index;
+                } else {
+                    state[index] = result;
+                }
+            }
+        }
+        long[] wins = new long[POSITIONS / 64];
+        for (int index = 0; index < POSITIONS; index++) {
+            if (state[index] == WON) wins[index >>> 6] |= 1L << index;
+        }
+        return wins;
+    }
+
+    private static boolean isValid(Piece piece, int index) {
+        int strongKing = (index >>> 12) & 63, sq = (index >>> 6) & 63, weakKing = index & 63;
+        if (strongKing == sq || strongKing == weakKing || sq == weakKing) return false;
+        if ((Bitboards.KING_ATTACKS[strongKing] & (1L << weakKing)) != 0L) return false;
+        if (piece == Piece.WHITE_PAWN && (sq < 8 || sq >= 56)) return false;
+        // With the strong side to move, the weak king may not be in check.
+        long occupied = (1L << strongKing) | (1L << sq) | (1L << weakKing);
+        return (index >>> 18) != 0 || (attacks(piece, sq, occupied) & (1L << weakKing)) == 0L;
+    }
+
+    private static long attacks(Piece piece, int sq, long occupied) {
+        return switch (piece) {
+            case WHITE_QUEEN -> Bitboards.queenAttacks(sq, occupied);
+            case WHITE_ROOK -> Bitboards.rookAttacks(sq, occupied);
+            default -> Bitboards.PAWN_ATTACKS[Bitboards.WHITE][sq];
+        };
+    }
+
+    /** Won if any move wins, drawn if every move draws (or there is none). */
+    private static byte strongToMove(Piece piece, byte[] state, int index) {
+        int strongKing = (index >>> 12) & 63, sq = (index >>> 6) & 63, weakKing = index & 63;
+        boolean undecided = false;
+        boolean anyMove = false;
+
+        long kingTargets = Bitboards.KING_ATTACKS[strongKing] & ~Bitboards.KING_ATTACKS[weakKing] & ~(1L << sq);
+        while (kingTargets != 0L) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            anyMove = true;
+            byte child = state[index(1, to, sq, weakKing)];
+            if (child == WON) return WON;
+            undecided |= child == UNKNOWN;
+        }
+
+        long occupied = (1L << strongKing) | (1L << sq) | (1L << weakKing);
+        if (piece == Piece.WHITE_PAWN) {
+            int oneStep = sq - 8;
+            if ((occupied & (1L << oneStep)) == 0L) {
+                anyMove = true;
+                if (oneStep < 8) {
+                    // Promote to a queen or, where that stalemates, a rook.
+                    int promoted = index(1, strongKing, oneStep, weakKing);
+                    if ((KQK[promoted >>> 6] & (1L << promoted)) != 0L || (KRK[promoted >>> 6] & (1L << promoted)) != 0L) {
+                        return WON;
+                    }
+                } else {
+                    byte child = state[index(1, strongKing, oneStep, weakKing)];
+                    if (child == WON) return WON;
+                    undecided |= child == UNKNOWN;
+                    int twoSteps = sq - 16;
+                    if (sq >= 48 && (occupied & (1L << twoSteps)) == 0L) {
+                        child = state[index(1, strongKing, twoSteps, weakKing)];
+                        if (child == WON) return WON;
+                        undecided |= child == UNKNOWN;
+                    }
+                }
+            }
+        } else {
+            long targets = attacks(piece, sq, occupied) & ~occupied;
+            while (targets != 0L) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                anyMove = true;
+                byte child = state[index(1, strongKing, to, weakKing)];
+                if (child == WON) return WON;
+                undecided |= child == UNKNOWN;
+            }
+        }
+        return !anyMove || !undecided ? DRAWN : UNKNOWN;
+    }
+
+    /** Drawn if any move draws (including taking the piece), won if every move loses; mate and stalemate end it. */
+    private static byte weakToMove(Piece piece, byte[] state, int index) {
+        int strongKing = (index >>> 12) & 63, sq = (index >>> 6) & 63, weakKing = index & 63;
+        long pieceBit = 1L << sq;
+        boolean inCheck = (attacks(piece, sq, (1L << strongKing) | pieceBit | (1L << weakKing)) & (1L << weakKing)) != 0L;
+        boolean undecided = false;
+        boolean anyMove = false;
+
+        long kingTargets = Bitboards.KING_ATTACKS[weakKing] & ~Bitboards.KING_ATTACKS[strongKing];
+        while (kingTargets != 0L) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (to == sq) {
+                // Taking the undefended piece leaves two bare kings.
+                return DRAWN;
+            }
+            // The weak king leaves its square, so a slider's ray may reach past it.
+            long occupied = (1L << strongKing) | pieceBit | (1L << to);
+            if ((attacks(piece, sq, occupied) & (1L << to)) != 0L) continue;
+            anyMove = true;
+            byte child = state[index(0, strongKing, sq, to)];
+            if (child == DRAWN) return DRAWN;
+            undecided |= child == UNKNOWN;
+        }
+        if (!anyMove) return inCheck ? WON : DRAWN;
+        return undecided ? UNKNOWN : WON;
+    }
+}
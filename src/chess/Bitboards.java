@@ -0,0 +1,173 @@
+package chess;
+
+/**
+ * Bitboards.java
+ * Precomputed attack tables used by the bitboard engine core.
+ * Squares are indexed as row * 8 + col, so square 0 is a8 and square 63 is h1,
+ * matching the (row, col) coordinates used everywhere else in the project.
+ * Sliding pieces use magic bitboards; the magics are searched once at class
+ * load with a fixed seed, so the tables are identical on every run.
+ */
+public final class Bitboards {
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    /** PAWN_ATTACKS[color][sq]: squares a pawn of that color on sq attacks. */
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+    /** BETWEEN[a][b]: squares strictly between a and b if they share a rank, file or diagonal, else 0. */
+    public static final long[][] BETWEEN = new long[64][64];
+    /** LINE[a][b]: the whole rank, file or diagonal through a and b (edge to edge), else 0. */
+    public static final long[][] LINE = new long[64][64];
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static long seed = 0x9E3779B97F4A7C15L;
+
+    static {
+        int[][] knightSteps = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+        for (int sq = 0; sq < 64; sq++) {
+            int r = sq >>> 3, c = sq & 7;
+            for (int[] m : knightSteps) {
+                KNIGHT_ATTACKS[sq] |= bit(r + m[0], c + m[1]);
+            }
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (dr != 0 || dc != 0) KING_ATTACKS[sq] |= bit(r + dr, c + dc);
+                }
+            }
+            PAWN_ATTACKS[WHITE][sq] = bit(r - 1, c - 1) | bit(r - 1, c + 1);
+            PAWN_ATTACKS[BLACK][sq] = bit(r + 1, c - 1) | bit(r + 1, c + 1);
+        }
+        ROOK_TABLE = initMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+        BISHOP_TABLE = initMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b) continue;
+                long bits = (1L << a) | (1L << b);
+                if ((rookAttacks(a, 0L) & (1L << b)) != 0L) {
+                    BETWEEN[a][b] = rookAttacks(a, 1L << b) & rookAttacks(b, 1L << a);
+                    LINE[a][b] = (rookAttacks(a, 0L) & rookAttacks(b, 0L)) | bits;
+                } else if ((bishopAttacks(a, 0L) & (1L << b)) != 0L) {
+                    BETWEEN[a][b] = bishopAttacks(a, 1L << b) & bishopAttacks(b, 1L << a);
+                    LINE[a][b] = (bishopAttacks(a, 0L) & bishopAttacks(b, 0L)) | bits;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    public static long rookAttacks(int sq, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSETS[sq] + (int) (((occupied & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+    }
+
+    public static long bishopAttacks(int sq, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[sq] + (int) (((occupied & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+    }
+
+    public static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    private static long bit(int r, int c) {
+        return (r >= 0 && r < 8 && c >= 0 && c < 8) ? 1L << (r * 8 + c) : 0L;
+    }
+
+    /** Walks the rays from sq, stopping at (and including) the first blocker. */
+    private static long slidingAttacks(int sq, long occupied, int[][] directions) {
+        long attacks = 0L;
+        int r = sq >>> 3, c = sq & 7;
+        for (int[] d : directions) {
+            for (int i = 1; i < 8; i++) {
+                long b = bit(r + i * d[0], c + i * d[1]);
+                if (b == 0L) break;
+                attacks |= b;
+                if ((occupied & b) != 0L) break;
+            }
+        }
+        return attacks;
+    }
+
+    /** Relevant occupancy: every ray square except the last one before the edge. */
+    private static long relevantMask(int sq, int[][] directions) {
+        long mask = 0L;
+        int r = sq >>> 3, c = sq & 7;
+        for (int[] d : directions) {
+            for (int i = 1; i < 8; i++) {
+                if (bit(r + (i + 1) * d[0], c + (i + 1) * d[1]) == 0L) break;
+                mask |= bit(r + i * d[0], c + i * d[1]);
+            }
+        }
+        return mask;
+    }
+
+    private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        int total = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            masks[sq] = relevantMask(sq, directions);
+            shifts[sq] = 64 - Long.bitCount(masks[sq]);
+            offsets[sq] = total;
+            total += 1 << Long.bitCount(masks[sq]);
+        }
+        long[] table = new long[total];
+        for (int sq = 0; sq < 64; sq++) {
+            long mask = masks[sq];
+            int size = 1 << Long.bitCount(mask);
+            long[] occupancies = new long[size];
+            long[] attacks = new long[size];
+            // Carry-Rippler enumeration of every subset of the mask.
+            long subset = 0L;
+            for (int i = 0; i < size; i++) {
+                occupancies[i] = subset;
+                attacks[i] = slidingAttacks(sq, subset, directions);
+                subset = (subset - mask) & mask;
+            }
+            magics[sq] = findMagic(occupancies, attacks, mask, shifts[sq], table, offsets[sq]);
+        }
+        return table;
+    }
+
+    private static long findMagic(long[] occupancies, long[] attacks, long mask, int shift, long[] table, int offset) {
+        int size = occupancies.length;
+        int[] epoch = new int[size];
+        for (int attempt = 1; ; attempt++) {
+            long magic = nextRandom() & nextRandom() & nextRandom();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) continue;
+            boolean ok = true;
+            for (int i = 0; i < size && ok; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> shift);
+                if (epoch[index] < attempt) {
+                    epoch[index] = attempt;
+                    table[offset + index] = attacks[i];
+                } else if (table[offset + index] != attacks[i]) {
+                    ok = false;
+                }
+            }
+            if (ok) return magic;
+        }
+    }
+
+    private static long nextRandom() {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
@@ -1,15 +1,37 @@
 package chess;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import static chess.Bitboards.BLACK;
+import static chess.Bitboards.WHITE;
+
 /**
  * Board.java
  * Represents the chessboard, handles move generation, validation, and evaluation.
- * This version includes a copy constructor for a robust AI implementation.
+ * The position is stored as bitboards: one long per piece (indexed by Piece.ordinal()),
+ * one occupancy mask per color and a combined occupancy mask. A 64-entry mailbox is
+ * kept alongside so getPiece(row, col) stays a single array lookup.
+ * The evaluation (material plus piece-square tables, see PieceSquareTables), the game
+ * phase and the king squares are updated incrementally as pieces are added and removed.
+ * Pawn-structure terms come from a PawnTable, keyed by a Zobrist key of the pawns alone.
+ * With an NNUE network attached (see setNetwork), its accumulators are updated the same way.
+ * Squares are indexed as row * 8 + col (see Bitboards). Moves are generated and played as
+ * packed ints (see Moves); the Move-based methods are for callers outside the engine.
  */
 public class Board {
-    private final Piece[][] board;
+    private static final Piece[] PIECES = Piece.values();
+
+    private final long[] pieces = new long[PIECES.length];
+    private final long[] colors = new long[2];
+    private long occupied;
+    private final Piece[] squares = new Piece[64];
+    // --- Incremental evaluation, White's point of view ---
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+    private final int[] kingSquares = {-1, -1};
     // --- Castling Flags ---
     private boolean whiteKingMoved;
     private boolean blackKingMoved;
@@ -17,259 +39,801 @@ public class Board {
     private boolean whiteQueensideRookMoved;
     private boolean blackKingsideRookMoved;
     private boolean blackQueensideRookMoved;
+    private boolean whiteToMove = true;
+    // Square a pawn just skipped with a double push (the en passant target), or -1
+    private int epSquare = -1;
+    // Zobrist key of the position, updated incrementally (see Zobrist), and of its pawns alone
+    private long zobristKey;
+    private long pawnKey;
+    // NNUE accumulators [WHITE] and [BLACK] of the attached network, or null (see Nnue)
+    private Nnue network;
+    private short[][] accumulators;
+    // Plies since the last capture or pawn move, and plies played before this board's history began
+    private int halfmoveClock;
+    private int plyOffset;
+    // --- Undo history: one packed entry and the previous key per move made, see makeMove/unmakeMove ---
+    private static final int EP_CAPTURE = 1 << 17;
+    private static final int CLOCK_SHIFT = 18;
+    private static final int MAX_CLOCK = 0x3FFF;
+    private int[] history = new int[256];
+    private long[] keyHistory = new long[256];
+    private int historySize;
 
     public Board() {
-        board = new Piece[8][8];
         setupInitialBoard();
     }
 
     /**
-     * Copy constructor. Creates a deep copy of another board's state.
-     * This is crucial for the AI to simulate moves without altering the real board.
+     * Copy constructor. Creates a deep copy of another board's state, including its undo history.
+     * The AI searches in place with makeMove/unmakeMove; copies are only needed for independent snapshots.
      */
     public Board(Board other) {
-        this.board = new Piece[8][8];
-        for (int r = 0; r < 8; r++) {
-            System.arraycopy(other.board[r], 0, this.board[r], 0, 8);
-        }
+        System.arraycopy(other.pieces, 0, this.pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, this.colors, 0, 2);
+        System.arraycopy(other.squares, 0, this.squares, 0, 64);
+        this.occupied = other.occupied;
+        this.middlegameScore = other.middlegameScore;
+        this.endgameScore = other.endgameScore;
+        this.phase = other.phase;
+        this.kingSquares[WHITE] = other.kingSquares[WHITE];
+        this.kingSquares[BLACK] = other.kingSquares[BLACK];
         this.whiteKingMoved = other.whiteKingMoved;
         this.blackKingMoved = other.blackKingMoved;
         this.whiteKingsideRookMoved = other.whiteKingsideRookMoved;
         this.whiteQueensideRookMoved = other.whiteQueensideRookMoved;
         this.blackKingsideRookMoved = other.blackKingsideRookMoved;
         this.blackQueensideRookMoved = other.blackQueensideRookMoved;
+        this.whiteToMove = other.whiteToMove;
+        this.epSquare = other.epSquare;
+        this.zobristKey = other.zobristKey;
+        this.pawnKey = other.pawnKey;
+        this.network = other.network;
+        if (other.accumulators != null) {
+            this.accumulators = new short[][]{other.accumulators[WHITE].clone(), other.accumulators[BLACK].clone()};
+        }
+        this.halfmoveClock = other.halfmoveClock;
+        this.plyOffset = other.plyOffset;
+        this.history = Arrays.copyOf(other.history, other.history.length);
+        this.keyHistory = Arrays.copyOf(other.keyHistory, other.keyHistory.length);
+        this.historySize = other.historySize;
     }
 
     public Piece getPiece(int row, int col) {
         if (row < 0 || row >= 8 || col < 0 || col >= 8) return null;
-        return board[row][col];
+        return squares[row * 8 + col];
     }
 
-    private void setupInitialBoard() {
-        board[0] = new Piece[]{Piece.BLACK_ROOK, Piece.BLACK_KNIGHT, Piece.BLACK_BISHOP, Piece.BLACK_QUEEN, Piece.BLACK_KING, Piece.BLACK_BISHOP, Piece.BLACK_KNIGHT, Piece.BLACK_ROOK};
-        board[1] = new Piece[]{Piece.BLACK_PAWN, Piece.BLACK_PAWN, Piece.BLACK_PAWN, Piece.BLACK_PAWN, Piece.BLACK_PAWN, Piece.BLACK_PAWN, Piece.BLACK_PAWN, Piece.BLACK_PAWN};
-        board[6] = new Piece[]{Piece.WHITE_PAWN, Piece.WHITE_PAWN, Piece.WHITE_PAWN, Piece.WHITE_PAWN, Piece.WHITE_PAWN, Piece.WHITE_PAWN, Piece.WHITE_PAWN, Piece.WHITE_PAWN};
-        board[7] = new Piece[]{Piece.WHITE_ROOK, Piece.WHITE_KNIGHT, Piece.WHITE_BISHOP, Piece.WHITE_QUEEN, Piece.WHITE_KING, Piece.WHITE_BISHOP, Piece.WHITE_KNIGHT, Piece.WHITE_ROOK};
+    public boolean isWhiteToMove() {
+        return whiteToMove;
     }
 
-    public int evaluate() {
-        int score = 0;
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null) {
-                    score += board[r][c].getValue();
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /** Zobrist key of the pawns alone, which keys the pawn-structure cache (see PawnTable). 0 without pawns. */
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    /** Bitboard of the squares holding the given piece. */
+    public long getBitboard(Piece piece) {
+        return pieces[piece.ordinal()];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /** The FEN fullmove number: 1 at the start, increased after every Black move. */
+    public int getFullmoveNumber() {
+        return (plyOffset + historySize) / 2 + 1;
+    }
+
+    /**
+     * Reads a position in Forsyth-Edwards Notation. The halfmove clock and fullmove number may
+     * be left out (they default to 0 and 1), so the first four fields of an EPD line also work.
+     * A castling right is dropped if the king or rook is not on its original square.
+     *
+     * @throws IllegalArgumentException if the FEN is malformed or not a legal position (kings, pawns, check)
+     */
+    public static Board fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4 || fields.length > 6) {
+            throw new IllegalArgumentException("Invalid FEN, expected 4 to 6 fields: " + fen);
+        }
+        Board board = new Board();
+        board.clear();
+        String[] ranks = fields[0].split("/", -1);
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("Invalid FEN, expected 8 ranks: " + fen);
+        }
+        for (int row = 0; row < 8; row++) {
+            int col = 0;
+            for (char c : ranks[row].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    col += c - '0';
+                    continue;
+                }
+                Piece piece = pieceForSymbol(c);
+                if (piece == null || col > 7) {
+                    throw new IllegalArgumentException("Invalid FEN rank '" + ranks[row] + "': " + fen);
                 }
+                board.putPiece(piece, row * 8 + col++);
+            }
+            if (col != 8) {
+                throw new IllegalArgumentException("Invalid FEN rank '" + ranks[row] + "': " + fen);
+            }
+        }
+        if (Long.bitCount(board.pieces[Piece.WHITE_KING.ordinal()]) != 1
+                || Long.bitCount(board.pieces[Piece.BLACK_KING.ordinal()]) != 1) {
+            throw new IllegalArgumentException("Invalid FEN, each side needs one king: " + fen);
+        }
+
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new IllegalArgumentException("Invalid FEN side to move '" + fields[1] + "': " + fen);
+        }
+        board.whiteToMove = fields[1].equals("w");
+        if (((board.pieces[Piece.WHITE_PAWN.ordinal()] | board.pieces[Piece.BLACK_PAWN.ordinal()]) & 0xFF000000000000FFL) != 0L) {
+            throw new IllegalArgumentException("Invalid FEN, pawn on the first or last rank: " + fen);
+        }
+        if (board.isInCheck(!board.whiteToMove)) {
+            throw new IllegalArgumentException("Invalid FEN, the side not to move is in check: " + fen);
+        }
+
+        String castling = fields[2];
+        if (!castling.matches("-|K?Q?k?q?")) {
+            throw new IllegalArgumentException("Invalid FEN castling field '" + castling + "': " + fen);
+        }
+        board.whiteKingsideRookMoved = !castling.contains("K") || board.squares[63] != Piece.WHITE_ROOK;
+        board.whiteQueensideRookMoved = !castling.contains("Q") || board.squares[56] != Piece.WHITE_ROOK;
+        board.blackKingsideRookMoved = !castling.contains("k") || board.squares[7] != Piece.BLACK_ROOK;
+        board.blackQueensideRookMoved = !castling.contains("q") || board.squares[0] != Piece.BLACK_ROOK;
+        board.whiteKingMoved = board.squares[60] != Piece.WHITE_KING
+                || (board.whiteKingsideRookMoved && board.whiteQueensideRookMoved);
+        board.blackKingMoved = board.squares[4] != Piece.BLACK_KING
+                || (board.blackKingsideRookMoved && board.blackQueensideRookMoved);
+
+        if (!fields[3].equals("-")) {
+            // The target square is on rank 6 when White is to move, rank 3 when Black is.
+            String expectedRank = board.whiteToMove ? "6" : "3";
+            if (!fields[3].matches("[a-h][36]") || !fields[3].endsWith(expectedRank)) {
+                throw new IllegalArgumentException("Invalid FEN en passant square '" + fields[3] + "': " + fen);
+            }
+            board.epSquare = ('8' - fields[3].charAt(1)) * 8 + (fields[3].charAt(0) - 'a');
+        }
+
+        try {
+            board.halfmoveClock = fields.length > 4 ? Math.min(Integer.parseInt(fields[4]), MAX_CLOCK) : 0;
+            int fullmove = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+            if (board.halfmoveClock < 0 || fullmove < 1) {
+                throw new IllegalArgumentException("Invalid FEN move counters: " + fen);
             }
+            board.plyOffset = 2 * (fullmove - 1) + (board.whiteToMove ? 0 : 1);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid FEN move counters: " + fen, e);
         }
-        return score;
+
+        board.zobristKey ^= Zobrist.CASTLING[board.castlingRights()];
+        if (board.epSquare >= 0) board.zobristKey ^= Zobrist.EN_PASSANT_FILE[board.epSquare & 7];
+        if (!board.whiteToMove) board.zobristKey ^= Zobrist.BLACK_TO_MOVE;
+        return board;
     }
 
-    public List<Move> getLegalMoves(boolean isWhitePlayer) {
-        List<Move> moves = new ArrayList<>();
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece piece = board[r][c];
-                if (piece != null && piece.isWhite() == isWhitePlayer) {
-                    switch (piece) {
-                        case WHITE_PAWN, BLACK_PAWN -> getPawnMoves(moves, r, c);
-                        case WHITE_ROOK, BLACK_ROOK -> getSlidingMoves(moves, r, c, new int[][]{{1, 0}, {-1, 0}, {0, 1}, {0, -1}});
-                        case WHITE_KNIGHT, BLACK_KNIGHT -> getKnightMoves(moves, r, c);
-                        case WHITE_BISHOP, BLACK_BISHOP -> getSlidingMoves(moves, r, c, new int[][]{{1, 1}, {1, -1}, {-1, 1}, {-1, -1}});
-                        case WHITE_QUEEN, BLACK_QUEEN -> getSlidingMoves(moves, r, c, new int[][]{{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}});
-                        case WHITE_KING, BLACK_KING -> getKingMoves(moves, r, c);
-                    }
+    /** The position in Forsyth-Edwards Notation, e.g. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1". */
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                Piece piece = squares[row * 8 + col];
+                if (piece == null) {
+                    empty++;
+                    continue;
                 }
+                if (empty > 0) sb.append(empty);
+                empty = 0;
+                sb.append(piece.getSymbol());
             }
+            if (empty > 0) sb.append(empty);
+            if (row < 7) sb.append('/');
+        }
+        sb.append(whiteToMove ? " w " : " b ");
+        int rights = castlingRights();
+        if (rights == 0) sb.append('-');
+        if ((rights & 1) != 0) sb.append('K');
+        if ((rights & 2) != 0) sb.append('Q');
+        if ((rights & 4) != 0) sb.append('k');
+        if ((rights & 8) != 0) sb.append('q');
+        sb.append(' ');
+        if (epSquare < 0) {
+            sb.append('-');
+        } else {
+            sb.append((char) ('a' + (epSquare & 7))).append((char) ('8' - (epSquare >>> 3)));
+        }
+        return sb.append(' ').append(halfmoveClock).append(' ').append(getFullmoveNumber()).toString();
+    }
+
+    private static Piece pieceForSymbol(char symbol) {
+        for (Piece piece : PIECES) {
+            if (piece.getSymbol().charAt(0) == symbol) return piece;
+        }
+        return null;
+    }
+
+    /** Empties the board and its history, for fromFen. */
+    private void clear() {
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(colors, 0L);
+        Arrays.fill(squares, null);
+        occupied = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        kingSquares[WHITE] = -1;
+        kingSquares[BLACK] = -1;
+        zobristKey = 0L;
+        pawnKey = 0L;
+        if (network != null) {
+            network.reset(accumulators[WHITE]);
+            network.reset(accumulators[BLACK]);
+        }
+        historySize = 0;
+    }
+
+    private void setupInitialBoard() {
+        Piece[] backRank = {Piece.BLACK_ROOK, Piece.BLACK_KNIGHT, Piece.BLACK_BISHOP, Piece.BLACK_QUEEN, Piece.BLACK_KING, Piece.BLACK_BISHOP, Piece.BLACK_KNIGHT, Piece.BLACK_ROOK};
+        Piece[] whiteBackRank = {Piece.WHITE_ROOK, Piece.WHITE_KNIGHT, Piece.WHITE_BISHOP, Piece.WHITE_QUEEN, Piece.WHITE_KING, Piece.WHITE_BISHOP, Piece.WHITE_KNIGHT, Piece.WHITE_ROOK};
+        for (int c = 0; c < 8; c++) {
+            putPiece(backRank[c], c);
+            putPiece(Piece.BLACK_PAWN, 8 + c);
+            putPiece(Piece.WHITE_PAWN, 48 + c);
+            putPiece(whiteBackRank[c], 56 + c);
+        }
+        zobristKey ^= Zobrist.CASTLING[castlingRights()];
+    }
+
+    private void putPiece(Piece piece, int sq) {
+        long b = 1L << sq;
+        pieces[piece.ordinal()] |= b;
+        colors[piece.isWhite() ? WHITE : BLACK] |= b;
+        occupied |= b;
+        squares[sq] = piece;
+        zobristKey ^= Zobrist.PIECE_SQUARE[piece.ordinal()][sq];
+        if (piece == Piece.WHITE_PAWN || piece == Piece.BLACK_PAWN) pawnKey ^= Zobrist.PIECE_SQUARE[piece.ordinal()][sq];
+        middlegameScore += PieceSquareTables.MIDDLEGAME[piece.ordinal()][sq];
+        endgameScore += PieceSquareTables.ENDGAME[piece.ordinal()][sq];
+        phase += PieceSquareTables.PHASE_WEIGHT[piece.ordinal()];
+        if (network != null) network.addPiece(accumulators, piece.ordinal(), sq);
+        if (piece == Piece.WHITE_KING) kingSquares[WHITE] = sq;
+        if (piece == Piece.BLACK_KING) kingSquares[BLACK] = sq;
+    }
+
+    private void removePiece(Piece piece, int sq) {
+        long b = ~(1L << sq);
+        pieces[piece.ordinal()] &= b;
+        colors[piece.isWhite() ? WHITE : BLACK] &= b;
+        occupied &= b;
+        squares[sq] = null;
+        zobristKey ^= Zobrist.PIECE_SQUARE[piece.ordinal()][sq];
+        if (piece == Piece.WHITE_PAWN || piece == Piece.BLACK_PAWN) pawnKey ^= Zobrist.PIECE_SQUARE[piece.ordinal()][sq];
+        middlegameScore -= PieceSquareTables.MIDDLEGAME[piece.ordinal()][sq];
+        endgameScore -= PieceSquareTables.ENDGAME[piece.ordinal()][sq];
+        phase -= PieceSquareTables.PHASE_WEIGHT[piece.ordinal()];
+        if (network != null) network.removePiece(accumulators, piece.ordinal(), sq);
+        if (piece == Piece.WHITE_KING) kingSquares[WHITE] = -1;
+        if (piece == Piece.BLACK_KING) kingSquares[BLACK] = -1;
+    }
+
+    /**
+     * Static evaluation in centipawns from White's point of view, using the calling thread's
+     * pawn table; see evaluate(PawnTable).
+     */
+    public int evaluate() {
+        return evaluate(PawnTable.local());
+    }
+
+    /**
+     * Static evaluation in centipawns from White's point of view: the running middlegame and
+     * endgame scores plus the pawn structure and king shelter, blended by game phase.
+     * The piece-square scores are kept up to date by makeMove and the pawn terms are usually a
+     * table hit, so this is O(1) but for the rare new pawn structure.
+     */
+    public int evaluate(PawnTable pawnTable) {
+        int slot = pawnTable.probe(pawnKey, pieces[Piece.WHITE_PAWN.ordinal()], pieces[Piece.BLACK_PAWN.ordinal()]);
+        int middlegame = middlegameScore + pawnTable.middlegame(slot)
+                + pawnTable.shelter(slot, WHITE, kingSquares[WHITE]) - pawnTable.shelter(slot, BLACK, kingSquares[BLACK]);
+        return blend(middlegame, endgameScore + pawnTable.endgame(slot));
+    }
+
+    /** Material and piece-square tables only, without the pawn structure, for comparison. */
+    public int evaluateMaterial() {
+        return blend(middlegameScore, endgameScore);
+    }
+
+    /**
+     * Attaches an NNUE network, whose accumulators this board then keeps up to date through
+     * makeMove and unmakeMove, or detaches it with null. Attaching computes them from scratch.
+     */
+    public void setNetwork(Nnue network) {
+        if (network == this.network) return;
+        this.network = network;
+        accumulators = null;
+        if (network == null) return;
+        accumulators = new short[2][network.getHiddenSize()];
+        network.reset(accumulators[WHITE]);
+        network.reset(accumulators[BLACK]);
+        for (long remaining = occupied; remaining != 0; remaining &= remaining - 1) {
+            int sq = Long.numberOfTrailingZeros(remaining);
+            network.addPiece(accumulators, squares[sq].ordinal(), sq);
+        }
+    }
+
+    public Nnue getNetwork() {
+        return network;
+    }
+
+    /** The attached network's evaluation in centipawns from White's point of view. */
+    public int evaluateNnue() {
+        return whiteToMove ? network.evaluate(accumulators[WHITE], accumulators[BLACK])
+                : -network.evaluate(accumulators[BLACK], accumulators[WHITE]);
+    }
+
+    private int blend(int middlegame, int endgame) {
+        int middlegamePhase = Math.min(phase, PieceSquareTables.MAX_PHASE);
+        return (middlegame * middlegamePhase + endgame * (PieceSquareTables.MAX_PHASE - middlegamePhase))
+                / PieceSquareTables.MAX_PHASE;
+    }
+
+    /**
+     * Generates the fully legal moves of the side to move into the caller's buffer (at least
+     * Moves.MAX_MOVES long) as packed ints, see Moves, and returns how many there are.
+     * Nothing is allocated, so the search keeps one buffer per ply.
+     * Checkers and pinned pieces are worked out first, so no generated move leaves the king in
+     * check: in double check only the king moves, in single check the other pieces may only
+     * capture the checker or block its ray, and a pinned piece stays on the line through its
+     * king. No moves means checkmate (if the side is in check) or stalemate.
+     */
+    public int generateMoves(int[] moves) {
+        return generateMoves(whiteToMove ? WHITE : BLACK, moves, false);
+    }
+
+    /**
+     * As generateMoves, but only the legal captures (en passant included) and promotions of
+     * the side to move: the moves a quiescence search looks at.
+     */
+    public int generateCaptures(int[] moves) {
+        return generateMoves(whiteToMove ? WHITE : BLACK, moves, true);
+    }
+
+    /** The legal moves of the given side as Move records, for callers outside the engine. */
+    public List<Move> getLegalMoves(boolean isWhitePlayer) {
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int count = generateMoves(isWhitePlayer ? WHITE : BLACK, buffer, false);
+        List<Move> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(Moves.toMove(buffer[i]));
         }
         return moves;
     }
 
-    private void getPawnMoves(List<Move> moves, int r, int c) {
-        Piece piece = board[r][c];
-        int direction = piece.isWhite() ? -1 : 1;
-        int startRow = piece.isWhite() ? 6 : 1;
+    private int generateMoves(int us, int[] moves, boolean capturesOnly) {
+        int count = 0;
+        int them = us ^ 1;
+        int king = kingSquares[us];
+        if (king < 0) return 0;
+        long own = colors[us];
+        // Squares a piece other than a pawn may move to.
+        long destinations = capturesOnly ? colors[them] : ~own;
+
+        // The king is taken off the board so it cannot hide behind itself on a slider's ray.
+        long kingTargets = Bitboards.KING_ATTACKS[king] & destinations;
+        long withoutKing = occupied ^ (1L << king);
+        while (kingTargets != 0L) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (attackersTo(to, them, withoutKing) == 0L) {
+                moves[count++] = Moves.encode(king, to, squares[to], 0, 0);
+            }
+        }
 
-        if (isValid(r + direction, c) && board[r + direction][c] == null) {
-            addMove(moves, r, c, r + direction, c);
+        long checkers = attackersTo(king, them, occupied);
+        if (Long.bitCount(checkers) > 1) return count;
+        long targetMask = ~own;
+        if (checkers != 0L) {
+            targetMask &= checkers | Bitboards.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        } else if (!capturesOnly) {
+            count = getCastlingMoves(moves, count, king, us == WHITE);
         }
-        if (r == startRow && board[r + direction][c] == null && isValid(r + 2 * direction, c) && board[r + 2 * direction][c] == null) {
-            addMove(moves, r, c, r + 2 * direction, c);
+        long pinned = pinnedPieces(king, us);
+
+        count = getPawnMoves(moves, count, us, king, targetMask, pinned, capturesOnly);
+        targetMask &= destinations;
+
+        long knights = piecesOf(Piece.WHITE_KNIGHT, us) & ~pinned;
+        while (knights != 0L) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            count = addMoves(moves, count, from, Bitboards.KNIGHT_ATTACKS[from] & targetMask);
         }
-        if (isValid(r + direction, c - 1) && board[r + direction][c - 1] != null && board[r + direction][c - 1].isWhite() != piece.isWhite()) {
-            addMove(moves, r, c, r + direction, c - 1);
+        long queens = piecesOf(Piece.WHITE_QUEEN, us);
+        long diagonal = piecesOf(Piece.WHITE_BISHOP, us) | queens;
+        while (diagonal != 0L) {
+            int from = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            long targets = Bitboards.bishopAttacks(from, occupied) & targetMask;
+            if ((pinned & (1L << from)) != 0L) targets &= Bitboards.LINE[king][from];
+            count = addMoves(moves, count, from, targets);
         }
-        if (isValid(r + direction, c + 1) && board[r + direction][c + 1] != null && board[r + direction][c + 1].isWhite() != piece.isWhite()) {
-            addMove(moves, r, c, r + direction, c + 1);
+        long straight = piecesOf(Piece.WHITE_ROOK, us) | queens;
+        while (straight != 0L) {
+            int from = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            long targets = Bitboards.rookAttacks(from, occupied) & targetMask;
+            if ((pinned & (1L << from)) != 0L) targets &= Bitboards.LINE[king][from];
+            count = addMoves(moves, count, from, targets);
         }
+        return count;
     }
 
-    private void getSlidingMoves(List<Move> moves, int r, int c, int[][] directions) {
-        Piece piece = board[r][c];
-        for (int[] d : directions) {
-            for (int i = 1; i < 8; i++) {
-                int newR = r + i * d[0];
-                int newC = c + i * d[1];
-                if (!isValid(newR, newC)) break;
-                if (board[newR][newC] == null) {
-                    addMove(moves, r, c, newR, newC);
-                } else {
-                    if (board[newR][newC].isWhite() != piece.isWhite()) {
-                        addMove(moves, r, c, newR, newC);
-                    }
-                    break;
+    /** With capturesOnly, pushes are only generated when they promote. */
+    private int getPawnMoves(int[] moves, int count, int us, int king, long targetMask, long pinned, boolean capturesOnly) {
+        long pawns = piecesOf(Piece.WHITE_PAWN, us);
+        long enemies = colors[us ^ 1];
+        long empty = ~occupied;
+        if (capturesOnly) empty &= 0xFF000000000000FFL;
+        int forward = us == WHITE ? -8 : 8;
+        // Pawns on their start rank: rank 2 (row 6) for white, rank 7 (row 1) for black.
+        long startRank = us == WHITE ? 0x00FF000000000000L : 0x000000000000FF00L;
+
+        while (pawns != 0L) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long allowed = targetMask;
+            if ((pinned & (1L << from)) != 0L) allowed &= Bitboards.LINE[king][from];
+
+            int oneStep = from + forward;
+            if ((empty & (1L << oneStep)) != 0L) {
+                if ((allowed & (1L << oneStep)) != 0L) count = addPawnMove(moves, count, from, oneStep);
+                int twoSteps = oneStep + forward;
+                if ((startRank & (1L << from)) != 0L && (empty & allowed & (1L << twoSteps)) != 0L) {
+                    moves[count++] = Moves.encode(from, twoSteps, null, 0, Moves.DOUBLE_PUSH);
                 }
             }
+            long attacks = Bitboards.PAWN_ATTACKS[us][from];
+            long captures = attacks & enemies & allowed;
+            while (captures != 0L) {
+                count = addPawnMove(moves, count, from, Long.numberOfTrailingZeros(captures));
+                captures &= captures - 1;
+            }
+            if (epSquare >= 0 && (attacks & (1L << epSquare)) != 0L) {
+                count = addEnPassant(moves, count, from, us, king);
+            }
         }
+        return count;
     }
 
-    private void getKnightMoves(List<Move> moves, int r, int c) {
-        int[][] knightMoves = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
-        for (int[] m : knightMoves) {
-            int newR = r + m[0];
-            int newC = c + m[1];
-            if (isValid(newR, newC)) {
-                Piece target = board[newR][newC];
-                if (target == null || target.isWhite() != board[r][c].isWhite()) {
-                    addMove(moves, r, c, newR, newC);
-                }
+    /** A pawn move, expanded into the four promotions when it reaches the last rank. */
+    private int addPawnMove(int[] moves, int count, int from, int to) {
+        Piece captured = squares[to];
+        if (to < 8 || to >= 56) {
+            for (int promotion = Piece.WHITE_QUEEN.ordinal(); promotion <= Piece.WHITE_KNIGHT.ordinal(); promotion++) {
+                moves[count++] = Moves.encode(from, to, captured, promotion, 0);
             }
+        } else {
+            moves[count++] = Moves.encode(from, to, captured, 0, 0);
         }
+        return count;
     }
 
-    private void getKingMoves(List<Move> moves, int r, int c) {
-        for (int dr = -1; dr <= 1; dr++) {
-            for (int dc = -1; dc <= 1; dc++) {
-                if (dr == 0 && dc == 0) continue;
-                int newR = r + dr;
-                int newC = c + dc;
-                if (isValid(newR, newC)) {
-                    Piece target = board[newR][newC];
-                    if (target == null || target.isWhite() != board[r][c].isWhite()) {
-                        addMove(moves, r, c, newR, newC);
-                    }
-                }
+    /**
+     * En passant removes two pieces from one rank, which can expose the king in ways the pin
+     * mask does not see, so the capture is checked directly against the resulting occupancy.
+     */
+    private int addEnPassant(int[] moves, int count, int from, int us, int king) {
+        int capturedSq = epSquare + (us == WHITE ? 8 : -8);
+        long after = (occupied ^ (1L << from) ^ (1L << capturedSq)) | (1L << epSquare);
+        if ((attackersTo(king, us ^ 1, after) & ~(1L << capturedSq)) == 0L) {
+            moves[count++] = Moves.encode(from, epSquare, squares[capturedSq], 0, Moves.EN_PASSANT);
+        }
+        return count;
+    }
+
+    /** Our pieces that stand alone between our king and an enemy slider aimed at it. */
+    private long pinnedPieces(int king, int us) {
+        int them = us ^ 1;
+        long theirs = colors[them];
+        long queens = piecesOf(Piece.WHITE_QUEEN, them);
+        // Attacks from the king with only enemy pieces as blockers x-ray through our own pieces.
+        long snipers = (Bitboards.rookAttacks(king, theirs) & (piecesOf(Piece.WHITE_ROOK, them) | queens))
+                | (Bitboards.bishopAttacks(king, theirs) & (piecesOf(Piece.WHITE_BISHOP, them) | queens));
+        long pinned = 0L;
+        while (snipers != 0L) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.BETWEEN[king][sniper] & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & colors[us]) != 0L) {
+                pinned |= blockers;
             }
         }
-        getCastlingMoves(moves, r, c);
+        return pinned;
     }
 
-    private void getCastlingMoves(List<Move> moves, int r, int c) {
-        boolean isWhite = board[r][c].isWhite();
-        if ((isWhite && whiteKingMoved) || (!isWhite && blackKingMoved)) return;
-        if (isSquareAttacked(r, c, !isWhite)) return;
+    /** Only called when the king is not in check. */
+    private int getCastlingMoves(int[] moves, int count, int from, boolean isWhite) {
+        if ((isWhite && whiteKingMoved) || (!isWhite && blackKingMoved)) return count;
+        Piece rook = isWhite ? Piece.WHITE_ROOK : Piece.BLACK_ROOK;
+        int rowStart = from & ~7;
 
         if ((isWhite && !whiteKingsideRookMoved) || (!isWhite && !blackKingsideRookMoved)) {
-            if (board[r][c + 1] == null && board[r][c + 2] == null) {
-                if (!isSquareAttacked(r, c + 1, !isWhite) && !isSquareAttacked(r, c + 2, !isWhite)) {
-                    addMove(moves, r, c, r, c + 2);
+            if (squares[rowStart + 7] == rook && squares[from + 1] == null && squares[from + 2] == null) {
+                if (!isSquareAttacked(from + 1, !isWhite) && !isSquareAttacked(from + 2, !isWhite)) {
+                    moves[count++] = Moves.encode(from, from + 2, null, 0, Moves.CASTLING);
                 }
             }
         }
         if ((isWhite && !whiteQueensideRookMoved) || (!isWhite && !blackQueensideRookMoved)) {
-            if (board[r][c - 1] == null && board[r][c - 2] == null && board[r][c - 3] == null) {
-                if (!isSquareAttacked(r, c - 1, !isWhite) && !isSquareAttacked(r, c - 2, !isWhite)) {
-                    addMove(moves, r, c, r, c - 2);
+            if (squares[rowStart] == rook && squares[from - 1] == null && squares[from - 2] == null && squares[from - 3] == null) {
+                if (!isSquareAttacked(from - 1, !isWhite) && !isSquareAttacked(from - 2, !isWhite)) {
+                    moves[count++] = Moves.encode(from, from - 2, null, 0, Moves.CASTLING);
                 }
             }
         }
+        return count;
     }
 
     public boolean isSquareAttacked(int r, int c, boolean byWhite) {
-        int pawnDir = byWhite ? 1 : -1;
-        if (isValid(r + pawnDir, c - 1) && getPiece(r + pawnDir, c - 1) == (byWhite ? Piece.WHITE_PAWN : Piece.BLACK_PAWN)) return true;
-        if (isValid(r + pawnDir, c + 1) && getPiece(r + pawnDir, c + 1) == (byWhite ? Piece.WHITE_PAWN : Piece.BLACK_PAWN)) return true;
-
-        int[][] knightMoves = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
-        for(int[] m : knightMoves) {
-            if (isValid(r + m[0], c + m[1]) && getPiece(r + m[0], c + m[1]) == (byWhite ? Piece.WHITE_KNIGHT : Piece.BLACK_KNIGHT)) return true;
-        }
-
-        int[][] slidingDirections = {{1,0},{-1,0},{0,1},{0,-1},{1,1},{1,-1},{-1,1},{-1,-1}};
-        for(int[] d : slidingDirections) {
-            for(int i = 1; i < 8; i++) {
-                int newR = r + i * d[0];
-                int newC = c + i * d[1];
-                if (!isValid(newR, newC)) break;
-                Piece p = getPiece(newR, newC);
-                if (p != null) {
-                    if (p.isWhite() == byWhite) {
-                        boolean isRook = p.getSymbol().equalsIgnoreCase("R");
-                        boolean isBishop = p.getSymbol().equalsIgnoreCase("B");
-                        boolean isQueen = p.getSymbol().equalsIgnoreCase("Q");
-                        boolean isKing = p.getSymbol().equalsIgnoreCase("K");
-                        boolean isStraight = d[0] == 0 || d[1] == 0;
-                        boolean isDiagonal = d[0] != 0 && d[1] != 0;
-
-                        if (isQueen || (isRook && isStraight) || (isBishop && isDiagonal)) return true;
-                        if (isKing && i == 1) return true;
-                    }
-                    break;
-                }
-            }
-        }
-        return false;
+        return isSquareAttacked(r * 8 + c, byWhite);
+    }
+
+    /** True if the given side's king is attacked (or missing). */
+    public boolean isInCheck(boolean isWhite) {
+        int king = kingSquares[isWhite ? WHITE : BLACK];
+        return king < 0 || isSquareAttacked(king, !isWhite);
+    }
+
+    private boolean isSquareAttacked(int sq, boolean byWhite) {
+        return attackersTo(sq, byWhite ? WHITE : BLACK, occupied) != 0L;
     }
 
-    private void addMove(List<Move> moves, int r, int c, int newR, int newC) {
-        Piece piece = board[r][c];
-        boolean isPromotion = (piece == Piece.WHITE_PAWN && newR == 0) || (piece == Piece.BLACK_PAWN && newR == 7);
-        moves.add(new Move(r, c, newR, newC, board[newR][newC], isPromotion));
+    /** All pieces of the given color that attack sq, with sliders blocked by the given occupancy. */
+    private long attackersTo(int sq, int color, long occupancy) {
+        long queens = piecesOf(Piece.WHITE_QUEEN, color);
+        // A pawn of the other color standing on sq would attack exactly the squares our pawns attack it from.
+        return (Bitboards.PAWN_ATTACKS[color ^ 1][sq] & piecesOf(Piece.WHITE_PAWN, color))
+                | (Bitboards.KNIGHT_ATTACKS[sq] & piecesOf(Piece.WHITE_KNIGHT, color))
+                | (Bitboards.KING_ATTACKS[sq] & piecesOf(Piece.WHITE_KING, color))
+                | (Bitboards.rookAttacks(sq, occupancy) & (piecesOf(Piece.WHITE_ROOK, color) | queens))
+                | (Bitboards.bishopAttacks(sq, occupancy) & (piecesOf(Piece.WHITE_BISHOP, color) | queens));
     }
 
-    private boolean isValid(int r, int c) {
-        return r >= 0 && r < 8 && c >= 0 && c < 8;
+    /** Bitboard of one piece type for a color. Piece lists the six white pieces, then the black ones in the same order. */
+    private long piecesOf(Piece whitePiece, int color) {
+        return pieces[whitePiece.ordinal() + 6 * color];
+    }
+
+    private int addMoves(int[] moves, int count, int from, long targets) {
+        while (targets != 0L) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[count++] = Moves.encode(from, to, squares[to], 0, 0);
+        }
+        return count;
     }
 
     public boolean isMoveLegal(Move move, boolean isWhitePlayer) {
-        List<Move> legalMoves = getLegalMoves(isWhitePlayer);
-        for(Move legalMove : legalMoves){
-            if(legalMove.startRow() == move.startRow() && legalMove.startCol() == move.startCol() &&
-                    legalMove.endRow() == move.endRow() && legalMove.endCol() == move.endCol()){
-                return true;
+        return findLegalMove(move, isWhitePlayer) != Moves.NONE;
+    }
+
+    /**
+     * The packed legal move of the given side matching an API-level move, or Moves.NONE.
+     * A promotion without a piece matches the queen promotion.
+     */
+    public int findLegalMove(Move move, boolean isWhitePlayer) {
+        int from = move.startRow() * 8 + move.startCol();
+        int to = move.endRow() * 8 + move.endCol();
+        int promotion = move.promotion() == null ? Piece.WHITE_QUEEN.ordinal() : move.promotion().ordinal() % 6;
+        int[] moves = new int[Moves.MAX_MOVES];
+        int count = generateMoves(isWhitePlayer ? WHITE : BLACK, moves, false);
+        for (int i = 0; i < count; i++) {
+            int legal = moves[i];
+            if (Moves.from(legal) == from && Moves.to(legal) == to
+                    && (!Moves.isPromotion(legal) || Moves.promotion(legal) == promotion)) {
+                return legal;
             }
         }
-        return false;
+        return Moves.NONE;
     }
 
+    /** Plays an API-level move; see makeMove(int). */
     public void makeMove(Move move) {
-        Piece piece = board[move.startRow()][move.startCol()];
+        int from = move.startRow() * 8 + move.startCol();
+        int to = move.endRow() * 8 + move.endCol();
+        Piece piece = squares[from];
+        boolean isPawn = piece == Piece.WHITE_PAWN || piece == Piece.BLACK_PAWN;
+        boolean isKing = piece == Piece.WHITE_KING || piece == Piece.BLACK_KING;
+        int flags = isPawn && to == epSquare ? Moves.EN_PASSANT
+                : isPawn && Math.abs(to - from) == 16 ? Moves.DOUBLE_PUSH
+                : isKing && Math.abs(to - from) == 2 ? Moves.CASTLING
+                : 0;
+        makeMove(Moves.encode(from, to, squares[to], promotionOf(move), flags));
+    }
+
+    /** Takes back an API-level move; see unmakeMove(int). */
+    public void unmakeMove(Move move) {
+        int from = move.startRow() * 8 + move.startCol();
+        int to = move.endRow() * 8 + move.endCol();
+        unmakeMove(Moves.encode(from, to, null, promotionOf(move), 0));
+    }
+
+    private static int promotionOf(Move move) {
+        return move.promotion() == null ? 0 : move.promotion().ordinal() % 6;
+    }
+
+    /**
+     * Plays a packed move (see Moves) in place and passes the turn. The captured piece, the castling flags, the
+     * en passant square and the Zobrist key are pushed onto the undo history, so the move can be taken back with unmakeMove without copying
+     * the board. The history array only grows when a line gets longer than any before it.
+     */
+    public void makeMove(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        Piece piece = squares[from];
+        int capturedSq = (move & Moves.EN_PASSANT) != 0 ? to + (piece.isWhite() ? 8 : -8) : to;
+        Piece captured = squares[capturedSq];
+
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+            keyHistory = Arrays.copyOf(keyHistory, historySize * 2);
+        }
+        keyHistory[historySize] = zobristKey;
+        history[historySize++] = (captured == null ? 0 : captured.ordinal() + 1)
+                | (castlingFlags() << 4)
+                | ((epSquare + 1) << 10)
+                | ((move & Moves.EN_PASSANT) != 0 ? EP_CAPTURE : 0)
+                | (halfmoveClock << CLOCK_SHIFT);
+        boolean pawnMove = piece == Piece.WHITE_PAWN || piece == Piece.BLACK_PAWN;
+        halfmoveClock = pawnMove || captured != null ? 0 : Math.min(halfmoveClock + 1, MAX_CLOCK);
+        int rightsBefore = castlingRights();
 
         if (piece == Piece.WHITE_KING) whiteKingMoved = true;
         if (piece == Piece.BLACK_KING) blackKingMoved = true;
-        if (piece == Piece.WHITE_ROOK && move.startRow() == 7 && move.startCol() == 0) whiteQueensideRookMoved = true;
-        if (piece == Piece.WHITE_ROOK && move.startRow() == 7 && move.startCol() == 7) whiteKingsideRookMoved = true;
-        if (piece == Piece.BLACK_ROOK && move.startRow() == 0 && move.startCol() == 0) blackQueensideRookMoved = true;
-        if (piece == Piece.BLACK_ROOK && move.startRow() == 0 && move.startCol() == 7) blackKingsideRookMoved = true;
-
-        if (piece.getSymbol().equalsIgnoreCase("K") && Math.abs(move.startCol() - move.endCol()) == 2) {
-            if (move.endCol() > move.startCol()) {
-                Piece rook = board[move.startRow()][7];
-                board[move.startRow()][5] = rook;
-                board[move.startRow()][7] = null;
-            } else {
-                Piece rook = board[move.startRow()][0];
-                board[move.startRow()][3] = rook;
-                board[move.startRow()][0] = null;
-            }
+        // Anything leaving or landing on a corner means that corner's rook has moved or been captured.
+        if (from == 56 || to == 56) whiteQueensideRookMoved = true;
+        if (from == 63 || to == 63) whiteKingsideRookMoved = true;
+        if (from == 0 || to == 0) blackQueensideRookMoved = true;
+        if (from == 7 || to == 7) blackKingsideRookMoved = true;
+
+        if ((move & Moves.CASTLING) != 0) {
+            moveCastlingRook(from, to, false);
         }
 
-        board[move.endRow()][move.endCol()] = piece;
-        board[move.startRow()][move.startCol()] = null;
+        if (captured != null) removePiece(captured, capturedSq);
+        removePiece(piece, from);
 
-        if (move.isPromotion()) {
-            board[move.endRow()][move.endCol()] = piece.isWhite() ? Piece.WHITE_QUEEN : Piece.BLACK_QUEEN;
+        if (Moves.isPromotion(move)) {
+            putPiece(PIECES[Moves.promotion(move) + (piece.isWhite() ? 0 : 6)], to);
+        } else {
+            putPiece(piece, to);
         }
+        if (epSquare >= 0) zobristKey ^= Zobrist.EN_PASSANT_FILE[epSquare & 7];
+        epSquare = (move & Moves.DOUBLE_PUSH) != 0 ? (from + to) / 2 : -1;
+        if (epSquare >= 0) zobristKey ^= Zobrist.EN_PASSANT_FILE[epSquare & 7];
+        zobristKey ^= Zobrist.CASTLING[rightsBefore] ^ Zobrist.CASTLING[castlingRights()] ^ Zobrist.BLACK_TO_MOVE;
+        whiteToMove = !whiteToMove;
     }
 
-    public boolean isGameOver() {
-        boolean whiteKingFound = false;
-        boolean blackKingFound = false;
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] == Piece.WHITE_KING) whiteKingFound = true;
-                if (board[r][c] == Piece.BLACK_KING) blackKingFound = true;
-            }
+    /**
+     * Takes back the most recent move, which must be the given one. Only its squares and
+     * promotion are read; everything else comes from the undo history.
+     * Restores the captured piece (also after en passant), the castling flags, the en passant
+     * square, a castled rook and a promoted pawn.
+     */
+    public void unmakeMove(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int entry = history[--historySize];
+        Piece piece = squares[to];
+
+        removePiece(piece, to);
+        if (Moves.isPromotion(move)) {
+            piece = piece.isWhite() ? Piece.WHITE_PAWN : Piece.BLACK_PAWN;
+        }
+        putPiece(piece, from);
+
+        int captured = entry & 0xF;
+        if (captured != 0) {
+            int capturedSq = (entry & EP_CAPTURE) != 0 ? to + (piece.isWhite() ? 8 : -8) : to;
+            putPiece(PIECES[captured - 1], capturedSq);
+        }
+
+        if ((piece == Piece.WHITE_KING || piece == Piece.BLACK_KING) && Math.abs(from - to) == 2) {
+            moveCastlingRook(from, to, true);
+        }
+        restoreCastlingFlags((entry >>> 4) & 0x3F);
+        epSquare = ((entry >>> 10) & 0x7F) - 1;
+        halfmoveClock = entry >>> CLOCK_SHIFT;
+        whiteToMove = !whiteToMove;
+        zobristKey = keyHistory[historySize];
+    }
+
+    /**
+     * Passes the turn without moving, for null-move pruning. The en passant square is
+     * cleared, and the previous state is pushed onto the undo history like a normal move.
+     * Must not be used while in check.
+     */
+    public void makeNullMove() {
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+            keyHistory = Arrays.copyOf(keyHistory, historySize * 2);
         }
-        return !whiteKingFound || !blackKingFound;
+        keyHistory[historySize] = zobristKey;
+        history[historySize++] = (castlingFlags() << 4) | ((epSquare + 1) << 10) | (halfmoveClock << CLOCK_SHIFT);
+        if (epSquare >= 0) zobristKey ^= Zobrist.EN_PASSANT_FILE[epSquare & 7];
+        epSquare = -1;
+        zobristKey ^= Zobrist.BLACK_TO_MOVE;
+        whiteToMove = !whiteToMove;
+    }
+
+    /** Takes back a makeNullMove. */
+    public void unmakeNullMove() {
+        int entry = history[--historySize];
+        epSquare = ((entry >>> 10) & 0x7F) - 1;
+        whiteToMove = !whiteToMove;
+        zobristKey = keyHistory[historySize];
+    }
+
+    private void moveCastlingRook(int kingFrom, int kingTo, boolean undo) {
+        int rowStart = kingFrom & ~7;
+        int cornerSq = kingTo > kingFrom ? rowStart + 7 : rowStart;
+        int castledSq = kingTo > kingFrom ? rowStart + 5 : rowStart + 3;
+        int rookFrom = undo ? castledSq : cornerSq;
+        int rookTo = undo ? cornerSq : castledSq;
+        Piece rook = squares[rookFrom];
+        removePiece(rook, rookFrom);
+        putPiece(rook, rookTo);
+    }
+
+    private int castlingFlags() {
+        return (whiteKingMoved ? 1 : 0)
+                | (blackKingMoved ? 2 : 0)
+                | (whiteKingsideRookMoved ? 4 : 0)
+                | (whiteQueensideRookMoved ? 8 : 0)
+                | (blackKingsideRookMoved ? 16 : 0)
+                | (blackQueensideRookMoved ? 32 : 0);
+    }
+
+    /** Castling rights still available, as a 4-bit mask: white O-O, white O-O-O, black O-O, black O-O-O. */
+    private int castlingRights() {
+        return (!whiteKingMoved && !whiteKingsideRookMoved ? 1 : 0)
+                | (!whiteKingMoved && !whiteQueensideRookMoved ? 2 : 0)
+                | (!blackKingMoved && !blackKingsideRookMoved ? 4 : 0)
+                | (!blackKingMoved && !blackQueensideRookMoved ? 8 : 0);
+    }
+
+    private void restoreCastlingFlags(int flags) {
+        whiteKingMoved = (flags & 1) != 0;
+        blackKingMoved = (flags & 2) != 0;
+        whiteKingsideRookMoved = (flags & 4) != 0;
+        whiteQueensideRookMoved = (flags & 8) != 0;
+        blackKingsideRookMoved = (flags & 16) != 0;
+        blackQueensideRookMoved = (flags & 32) != 0;
+    }
+
+    /** True if the side to move has no legal move: it is checkmated or stalemated. */
+    public boolean isGameOver() {
+        return generateMoves(new int[Moves.MAX_MOVES]) == 0;
+    }
+
+    public boolean isCheckmate() {
+        return isInCheck(whiteToMove) && isGameOver();
+    }
+
+    public boolean isStalemate() {
+        return !isInCheck(whiteToMove) && isGameOver();
     }
 }
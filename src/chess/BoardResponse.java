@@ -0,0 +1,28 @@
+package chess;
+
+/**
+ * BoardResponse.java
+ * A hosted game's board for one version (see Game.getVersion), encoded once and served to
+ * every /get-board poll until the next move: the 8x8 JSON array the UI draws, and a compact
+ * {"version":N,"fen":"..."} object. The ETag names the version and the format, so a client
+ * that sends it back in If-None-Match gets 304 Not Modified instead of the body.
+ */
+public record BoardResponse(int version, byte[] json, byte[] fen) {
+
+    /** The ETag of this version in the given format ("json" or "fen"). */
+    public String etag(String format) {
+        return "\"" + version + "-" + format + "\"";
+    }
+
+    /** True if an If-None-Match header (a list of ETags, or *) matches this version in the format. */
+    public boolean matches(String ifNoneMatch, String format) {
+        if (ifNoneMatch == null) return false;
+        String etag = etag(format);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,162 @@
+package chess;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BookBuilder.java
+ * Offline tool that builds an OpeningBook file from the games in a PGN file.
+ * The first plies of every game are replayed, and each (position, move) pair is counted.
+ * A move's weight is the number of games that played it, with a win counting double,
+ * capped at 65535. Moves whose weight is below minGames are left out.
+ *
+ * Usage: java -cp <classes> chess.BookBuilder games.pgn book.bin [maxPlies] [minGames]   (default 20, 2)
+ */
+public class BookBuilder {
+
+    private final int maxPlies;
+    // Zobrist key -> (move key -> weight)
+    private final Map<Long, Map<Integer, Integer>> counts = new HashMap<>();
+    private int games;
+    private int unreadableGames;
+    // Comment and variation depth carry over between lines.
+    private int braceDepth;
+    private int parenDepth;
+
+    public BookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java chess.BookBuilder <games.pgn> <book.bin> [maxPlies] [minGames]");
+            System.exit(2);
+        }
+        int maxPlies = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int minGames = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        long start = System.nanoTime();
+        BookBuilder builder = new BookBuilder(maxPlies);
+        builder.addPgn(Files.readString(Path.of(args[0])));
+        int entries = builder.write(Path.of(args[1]), minGames);
+        System.out.printf("%,d games (%,d cut short by an unreadable move), %,d positions, %,d book entries, %,d bytes, %.1f s%n",
+                builder.games, builder.unreadableGames, builder.counts.size(), entries,
+                OpeningBook.HEADER_BYTES + (long) entries * OpeningBook.ENTRY_BYTES, (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Adds every game of a PGN text. A game with a move that cannot be read is used up to that move. */
+    public void addPgn(String pgn) {
+        List<String> tokens = new ArrayList<>();
+        String result = null;
+        for (String line : pgn.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("[")) {
+                // A tag after movetext starts the next game.
+                if (!tokens.isEmpty()) {
+                    addGame(tokens, result);
+                    tokens.clear();
+                    result = null;
+                }
+                if (trimmed.startsWith("[Result ")) {
+                    result = trimmed.substring(8).replaceAll("[\"\\]]", "").trim();
+                }
+                continue;
+            }
+            tokens.addAll(movetextTokens(trimmed));
+        }
+        if (!tokens.isEmpty()) {
+            addGame(tokens, result);
+        }
+    }
+
+    private void addGame(List<String> sanMoves, String result) {
+        games++;
+        Board board = new Board();
+        int ply = 0;
+        for (String san : sanMoves) {
+            if (ply >= maxPlies) break;
+            int move = Moves.fromSan(board, san);
+            if (move == Moves.NONE) {
+                unreadableGames++;
+                break;
+            }
+            boolean winner = ("1-0".equals(result) && board.isWhiteToMove())
+                    || ("0-1".equals(result) && !board.isWhiteToMove());
+            counts.computeIfAbsent(board.getZobristKey(), k -> new HashMap<>())
+                    .merge(Moves.key(move), winner ? 2 : 1, Integer::sum);
+            board.makeMove(move);
+            ply++;
+        }
+    }
+
+    /** Splits movetext into SAN moves, dropping comments, variations, NAGs, move numbers and results. */
+    private List<String> movetextTokens(String line) {
+        List<String> moves = new ArrayList<>();
+        if (line.startsWith("%")) return moves;
+        for (String token : stripComments(line).split("\\s+")) {
+            String move = token.replaceFirst("^\\d+\\.+", "");
+            if (move.isEmpty() || move.startsWith("$") || move.equals("*")
+                    || move.equals("1-0") || move.equals("0-1") || move.equals("1/2-1/2")) {
+                continue;
+            }
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    private String stripComments(String line) {
+        StringBuilder sb = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (braceDepth > 0) {
+                if (c == '}') braceDepth = 0;
+            } else if (c == '{') {
+                braceDepth = 1;
+            } else if (c == ';') {
+                break;
+            } else if (c == '(') {
+                parenDepth++;
+            } else if (c == ')') {
+                parenDepth = Math.max(0, parenDepth - 1);
+            } else if (parenDepth == 0) {
+                sb.append(c);
+                continue;
+            }
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    /** Writes the book sorted by key, heaviest move first within a position. Returns the number of entries. */
+    public int write(Path path, int minGames) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, Integer>> position : counts.entrySet()) {
+            for (Map.Entry<Integer, Integer> move : position.getValue().entrySet()) {
+                if (move.getValue() >= minGames) {
+                    entries.add(new long[]{position.getKey(), move.getKey(), Math.min(move.getValue(), 0xFFFF)});
+                }
+            }
+        }
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[2], a[2]));
+
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeLong(entries.size());
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeShort((int) entry[1]);
+                out.writeShort((int) entry[2]);
+            }
+        }
+        return entries.size();
+    }
+}
@@ -1,67 +1,762 @@
 package chess;
 
-import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * ChessAI.java
- * Contains the AI logic using the Minimax algorithm with Alpha-Beta Pruning.
- * This version uses a "copy-on-write" approach for simulations, which is more robust
- * and prevents state corruption bugs.
+ * Contains the AI logic using the Minimax algorithm with Alpha-Beta Pruning,
+ * written in negamax form: every score is from the point of view of the side to move.
+ * The search walks a single board in place with makeMove/unmakeMove instead of
+ * copying it at every node, and remembers results in a transposition table that
+ * is kept for the lifetime of this ChessAI (one per Game). Searches deepen iteratively
+ * within a depth, time or node budget (see SearchLimits).
+ * Moves are searched in the order chosen by MoveOrderer (hash move, MVV-LVA captures,
+ * promotions, killers, history). Moves are packed ints generated into one preallocated
+ * buffer per ply, kept by each search thread across searches, so the search allocates nothing
+ * per node and little per search; only the returned move is a Move.
+ * With more than one thread the search runs as Lazy SMP: helper threads search their own
+ * copy of the board and only cooperate through the shared transposition table. The move
+ * returned is always the one found by the main thread.
+ * Beyond the nominal depth a quiescence search plays out captures, so leaves are not scored
+ * in the middle of an exchange. Null-move pruning, late-move reductions and principal
+ * variation search cut the tree down, and each iteration starts with an aspiration window
+ * around the previous score. Each of these can be switched off to measure what it is worth.
+ * With three pieces or fewer on the board the endgame bitbases (see Bitbases) give exact
+ * results: the root keeps only the moves that hold the best result, and drawn positions are
+ * scored without searching them.
+ * Leaves are scored with Board.evaluate, whose pawn-structure terms each search thread
+ * caches in its own PawnTable (kept for the thread's lifetime, across games), or with an NNUE
+ * network if one is set (see Nnue; -Dchess.nnue=path sets it for every ChessAI). The network is
+ * attached to the searched boards for the search, which then update its accumulators as they go.
+ * Each search adds its totals (nodes, cutoffs, depth, time, branching factor) to Metrics when
+ * it ends, and emits a SearchEvent for Flight Recorder; the search itself only bumps plain
+ * per-worker counters.
  */
 public class ChessAI {
 
+    private static final int INFINITY = 1_000_000;
+    // Score of being checkmated at the root; a mate found n plies away scores MATE - n.
+    private static final int MATE = 100_000;
+    private static final int MATE_BOUND = MATE - 1000;
+    // Score of a won bitbase position (see Bitbases) the search has not yet seen through to mate.
+    private static final int KNOWN_WIN = 20_000;
+    // What a known win is reported as (see centipawns): a decisive score the evaluation can also give
+    private static final int REPORTED_WIN = 1000;
+    // Quiescence can go well beyond the nominal depth; the move buffers stop it at this ply.
+    private static final int MAX_PLY = SearchLimits.MAX_DEPTH * 2;
+    // Half-width of the first aspiration window, in centipawns; it grows fourfold on each failure.
+    private static final int ASPIRATION_WINDOW = 50;
+
+    /** Search threads per ChessAI, configurable with -Dchess.threads=N. */
+    public static final int DEFAULT_THREADS = Math.max(1, Integer.getInteger("chess.threads", 1));
+
+    private static final ExecutorService HELPER_POOL = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "chess-search-helper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Piece[] PIECES = Piece.values();
+
+    // moveStack[ply] of the calling thread: allocated once per search thread (about 130 KB) and reused
+    // by every search it runs, so hosting many games does not hold one per game
+    private static final ThreadLocal<int[][]> MOVE_STACK =
+            ThreadLocal.withInitial(() -> new int[MAX_PLY + 1][Moves.MAX_MOVES]);
+
+    private final TranspositionTable table;
+    private final int threads;
+    private final MoveOrderer[] orderers;
+    private boolean moveOrdering = true;
+    private boolean quiescence = true;
+    private boolean nullMovePruning = true;
+    private boolean lateMoveReductions = true;
+    private boolean principalVariationSearch = true;
+    private boolean aspirationWindows = true;
+    private boolean pawnStructure = true;
+    private Nnue network = Nnue.getDefault();
+
+    // --- Per-search state shared by all workers ---
+    private final AtomicLong sharedNodes = new AtomicLong();
+    private long nodeLimit;
+    // Volatile, as limitTime can move the deadline from another thread; both are set under clockLock
+    private volatile long deadline;
+    private volatile long startTime;
+    // The search's time budget, 0 if it has none, so a ponder hit can restart it
+    private volatile long budgetNanos;
+    // Shortest limitTime since the last search ended, applied by a search that had not armed its clock yet
+    private long timeCapMillis = Long.MAX_VALUE;
+    private final Object clockLock = new Object();
+    private Consumer<SearchProgress> listener;
+    private volatile boolean pondering;
+    private volatile SearchWorker[] workers = new SearchWorker[0];
+
+    public ChessAI() {
+        this(new TranspositionTable(), DEFAULT_THREADS);
+    }
+
+    public ChessAI(TranspositionTable table) {
+        this(table, DEFAULT_THREADS);
+    }
+
+    public ChessAI(TranspositionTable table, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Search needs at least one thread: " + threads);
+        }
+        this.table = table;
+        this.threads = threads;
+        this.orderers = new MoveOrderer[threads];
+        for (int i = 0; i < threads; i++) {
+            orderers[i] = new MoveOrderer();
+        }
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /** Turns the MoveOrderer stage on or off; when off, only the hash move is tried first. */
+    public void setMoveOrdering(boolean enabled) {
+        this.moveOrdering = enabled;
+    }
+
+    /** Turns the quiescence search on or off; when off, leaves are scored by the static evaluation. */
+    public void setQuiescence(boolean enabled) {
+        this.quiescence = enabled;
+    }
+
+    /** Turns null-move pruning on or off. */
+    public void setNullMovePruning(boolean enabled) {
+        this.nullMovePruning = enabled;
+    }
+
+    /** Turns late-move reductions (quiet moves late in the order searched one or two plies shallower) on or off. */
+    public void setLateMoveReductions(boolean enabled) {
+        this.lateMoveReductions = enabled;
+    }
+
+    /** Turns principal variation search (null-window searches after the first move) on or off. */
+    public void setPrincipalVariationSearch(boolean enabled) {
+        this.principalVariationSearch = enabled;
+    }
+
+    /** Turns aspiration windows at the root on or off; when off, every iteration uses a full window. */
+    public void setAspirationWindows(boolean enabled) {
+        this.aspirationWindows = enabled;
+    }
+
+    /** With the pawn structure off, leaves are scored by material and piece-square tables only. */
+    public void setPawnStructure(boolean enabled) {
+        this.pawnStructure = enabled;
+    }
+
+    /** Scores leaves with this network instead of the hand-written evaluation, or with that again if null. */
+    public void setNetwork(Nnue network) {
+        this.network = network;
+    }
+
+    public Nnue getNetwork() {
+        return network;
+    }
+
+    /** Searches for the side to move to a fixed depth and returns its best move, or null if it has none. */
     public Move findBestMove(Board board, int depth) {
-        Move bestMove = null;
-        int bestValue = Integer.MAX_VALUE;
+        return findBestMove(board, SearchLimits.depth(depth));
+    }
 
-        for (Move move : board.getLegalMoves(false)) {
-            // Create a copy of the board for simulation
-            Board nextBoard = new Board(board);
-            nextBoard.makeMove(move);
+    /**
+     * Iterative deepening: searches depth 1, 2, 3, ... until the limits are reached or stop() is
+     * called, trying the previous iteration's best move first. An unfinished iteration is thrown
+     * away, so the result is always the best move of the last completed depth.
+     * Helper threads, if any, are stopped and joined before this returns.
+     */
+    public Move findBestMove(Board board, SearchLimits limits) {
+        return findBestMove(board, limits, null);
+    }
 
-            int moveValue = minimax(nextBoard, depth - 1, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+    /**
+     * As findBestMove(board, limits), reporting each completed iteration of the main thread to
+     * the listener (if not null). The listener runs on the search thread, so it should be quick.
+     */
+    public Move findBestMove(Board board, SearchLimits limits, Consumer<SearchProgress> listener) {
+        SearchEvent event = new SearchEvent();
+        event.pondering = pondering;
+        event.begin();
+        table.newSearch();
+        sharedNodes.set(0);
+        this.listener = listener;
+        synchronized (clockLock) {
+            startTime = System.nanoTime();
+            budgetNanos = limits.moveTimeMillis() * 1_000_000L;
+            deadline = budgetNanos > 0 ? startTime + budgetNanos : Long.MAX_VALUE;
+            if (timeCapMillis != Long.MAX_VALUE) {
+                deadline = Math.min(deadline, startTime + timeCapMillis * 1_000_000L);
+            }
+        }
+        nodeLimit = limits.nodes() > 0 ? limits.nodes() : Long.MAX_VALUE;
+        int maxDepth = Math.min(limits.depth(), SearchLimits.MAX_DEPTH);
+
+        for (MoveOrderer orderer : orderers) {
+            orderer.newSearch();
+        }
+        // Helpers copy the board after this, accumulators included.
+        Nnue previousNetwork = board.getNetwork();
+        board.setNetwork(network);
+        SearchWorker[] current = new SearchWorker[threads];
+        current[0] = new SearchWorker(0, board);
+        for (int i = 1; i < threads; i++) {
+            current[i] = new SearchWorker(i, new Board(board));
+        }
+        workers = current;
 
-            // No undoMove is needed because we used a copy
+        Future<?>[] helpers = new Future<?>[threads - 1];
+        for (int i = 1; i < threads; i++) {
+            SearchWorker helper = current[i];
+            helpers[i - 1] = HELPER_POOL.submit(() -> helper.iterate(maxDepth));
+        }
+        int bestMove = current[0].iterate(maxDepth);
 
-            if (moveValue < bestValue) {
-                bestValue = moveValue;
-                bestMove = move;
+        for (int i = 1; i < threads; i++) {
+            current[i].stop = true;
+        }
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
             }
         }
-        return bestMove;
+        board.setNetwork(previousNetwork);
+        synchronized (clockLock) {
+            timeCapMillis = Long.MAX_VALUE;
+        }
+        recordSearch(board, current, bestMove, event);
+        return bestMove == Moves.NONE ? null : Moves.toMove(bestMove);
     }
 
-    private int minimax(Board board, int depth, int alpha, int beta, boolean isMaximizingPlayer) {
-        if (depth == 0 || board.isGameOver()) {
-            return board.evaluate();
+    /** Adds a finished search's totals to Metrics and commits its Flight Recorder event if enabled. */
+    private void recordSearch(Board board, SearchWorker[] current, int bestMove, SearchEvent event) {
+        long elapsed = Math.max(1, System.nanoTime() - startTime);
+        long nodes = 0, interiorNodes = 0, cutoffs = 0, firstMoveCutoffs = 0, pawnProbes = 0, pawnHits = 0;
+        for (SearchWorker worker : current) {
+            nodes += worker.nodes;
+            pawnProbes += worker.pawnProbes;
+            pawnHits += worker.pawnHits;
+            interiorNodes += worker.interiorNodes;
+            cutoffs += worker.cutoffs;
+            firstMoveCutoffs += worker.firstMoveCutoffs;
         }
+        SearchWorker main = current[0];
+        double branchingFactor = main.previousIterationNodes > 0
+                ? (double) main.iterationNodes / main.previousIterationNodes : 0;
+        long nodesPerSecond = nodes * 1_000_000_000L / elapsed;
+
+        Metrics.SEARCHES.increment();
+        Metrics.SEARCH_NODES.add(nodes);
+        Metrics.SEARCH_INTERIOR_NODES.add(interiorNodes);
+        Metrics.SEARCH_CUTOFFS.add(cutoffs);
+        Metrics.SEARCH_FIRST_MOVE_CUTOFFS.add(firstMoveCutoffs);
+        Metrics.PAWN_TABLE_PROBES.add(pawnProbes);
+        Metrics.PAWN_TABLE_HITS.add(pawnHits);
+        Metrics.SEARCH_SECONDS.observe(elapsed / 1e9);
+        Metrics.SEARCH_DEPTH.observe(main.completedDepth);
+        if (branchingFactor > 0) Metrics.SEARCH_BRANCHING_FACTOR.observe(branchingFactor);
+        Metrics.SEARCH_LAST_NPS.set(nodesPerSecond);
+
+        event.end();
+        if (event.shouldCommit()) {
+            // The board is back at the searched position; the FEN is only built for a recording.
+            event.fen = board.toFen();
+            event.legalMoves = board.generateMoves(new int[Moves.MAX_MOVES]);
+            event.pieces = Long.bitCount(board.getOccupied());
+            event.threads = current.length;
+            event.depth = main.completedDepth;
+            event.nodes = nodes;
+            event.nodesPerSecond = nodesPerSecond;
+            event.branchingFactor = branchingFactor;
+            event.cutoffRate = interiorNodes > 0 ? (double) cutoffs / interiorNodes : 0;
+            event.firstMoveCutoffRate = cutoffs > 0 ? (double) firstMoveCutoffs / cutoffs : 0;
+            event.pawnHitRate = pawnProbes > 0 ? (double) pawnHits / pawnProbes : 0;
+            event.score = main.rootScore;
+            event.bestMove = bestMove == Moves.NONE ? null : Moves.toString(bestMove);
+            event.commit();
+        }
+    }
+
+    /**
+     * While pondering, a search ignores its time budget, so it can think on the opponent's time.
+     * Clearing the flag (a ponder hit) brings the budget back into force, counted from the start of
+     * the search: a search that has already used it up stops at once with its best move so far.
+     * Set it before the search starts.
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+    }
+
+    /**
+     * Ends pondering with the whole time budget still to use, counted from now rather than from
+     * the start of the search, as UCI's ponderhit means: the clock only started running now.
+     */
+    public void ponderHit() {
+        synchronized (clockLock) {
+            if (budgetNanos > 0) deadline = System.nanoTime() + budgetNanos;
+        }
+        pondering = false;
+    }
+
+    /**
+     * Cuts the running search's time budget to millis from its start; a nearer deadline is kept.
+     * The search notices at its next clock check and returns the best move of its last completed
+     * depth, as if the budget had been that from the start (see SearchScheduler).
+     * Called before the search has armed its clock, it caps the budget the search starts with,
+     * so a cut in that gap is not lost to the new deadline. The cap lasts until the search ends.
+     */
+    public void limitTime(long millis) {
+        synchronized (clockLock) {
+            timeCapMillis = Math.min(timeCapMillis, millis);
+            deadline = Math.min(deadline, startTime + millis * 1_000_000L);
+        }
+    }
+
+    /** Asks a running search to stop; it returns the best move of its last completed depth. */
+    public void stop() {
+        for (SearchWorker worker : workers) {
+            worker.stop = true;
+        }
+    }
+
+    /**
+     * The best move the transposition table holds for the position, as a legal packed move,
+     * or Moves.NONE. After a search this is the reply it expects to the move it played.
+     */
+    public int getHashMove(Board board) {
+        long entry = table.probe(board.getZobristKey());
+        if (entry == 0L) return Moves.NONE;
+        int key = TranspositionTable.move(entry);
+        int[] moves = new int[Moves.MAX_MOVES];
+        int count = board.generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (Moves.key(moves[i]) == key) return moves[i];
+        }
+        return Moves.NONE;
+    }
+
+    /** Nodes searched by all threads in the current or last search. */
+    public long getNodes() {
+        long total = 0;
+        for (SearchWorker worker : workers) {
+            total += worker.nodes;
+        }
+        return total;
+    }
+
+    /** Deepest iteration the main thread completed in the current or last search. */
+    public int getCompletedDepth() {
+        SearchWorker[] current = workers;
+        return current.length == 0 ? 0 : current[0].completedDepth;
+    }
 
-        if (isMaximizingPlayer) {
-            int maxEval = Integer.MIN_VALUE;
-            for (Move move : board.getLegalMoves(true)) {
-                Board nextBoard = new Board(board);
-                nextBoard.makeMove(move);
-                int eval = minimax(nextBoard, depth - 1, alpha, beta, false);
-                maxEval = Math.max(maxEval, eval);
+    /** One search thread: its own board and counters, sharing only the transposition table. */
+    private final class SearchWorker {
+        private final int id;
+        private final Board board;
+        private final MoveOrderer orderer;
+        // moveStack[ply] holds the moves generated at that ply, root included; set by iterate.
+        private int[][] moveStack;
+        private volatile boolean stop;
+        private boolean aborted;
+        private long nodes;
+        // Statistics for Metrics: full-width nodes that searched a move, and how many of them cut off
+        private long interiorNodes;
+        private long cutoffs;
+        private long firstMoveCutoffs;
+        // This worker's nodes when its last two iterations completed, for the branching factor
+        private long iterationNodes;
+        private long previousIterationNodes;
+        private PawnTable pawns;
+        // Pawn table probes and hits of this search (the table's own counts run across searches)
+        private long pawnProbesBefore, pawnHitsBefore;
+        private long pawnProbes, pawnHits;
+        private int completedDepth;
+        private int rootScore;
+
+        SearchWorker(int id, Board board) {
+            this.id = id;
+            this.board = board;
+            this.orderer = orderers[id];
+        }
+
+        int iterate(int maxDepth) {
+            // The thread's own pawn table and move buffers; helpers only get here on their own thread.
+            pawns = PawnTable.local();
+            moveStack = MOVE_STACK.get();
+            pawnProbesBefore = pawns.getProbes();
+            pawnHitsBefore = pawns.getHits();
+            try {
+                return deepen(maxDepth);
+            } finally {
+                pawnProbes = pawns.getProbes() - pawnProbesBefore;
+                pawnHits = pawns.getHits() - pawnHitsBefore;
+            }
+        }
+
+        private int deepen(int maxDepth) {
+            int[] moves = moveStack[0];
+            int count = board.generateMoves(moves);
+            if (count == 0) return Moves.NONE;
+            if (Long.bitCount(board.getOccupied()) <= 3) {
+                count = keepBitbaseBest(moves, count);
+            }
+            long entry = table.probe(board.getZobristKey());
+            int hashMove = entry == 0L ? 0 : TranspositionTable.move(entry);
+            if (moveOrdering) {
+                orderer.order(board, moves, count, hashMove, 0);
+            } else {
+                orderHashMove(moves, count, hashMove);
+            }
+
+            int bestMove = moves[0];
+            // Odd helpers start one ply deeper, so the threads spread over two depths at once.
+            for (int depth = 1 + (id & 1); depth <= maxDepth; depth++) {
+                int iterationBest = searchWithAspiration(moves, count, depth);
+                if (aborted) break;
+                bestMove = iterationBest;
+                completedDepth = depth;
+                previousIterationNodes = iterationNodes;
+                iterationNodes = nodes;
+                moveToFront(moves, count, Moves.key(bestMove));
+                if (id == 0 && listener != null) {
+                    listener.accept(new SearchProgress(depth, rootScore, getNodes(),
+                            (System.nanoTime() - startTime) / 1_000_000, Moves.toString(bestMove)));
+                }
+            }
+            return bestMove;
+        }
+
+        /**
+         * In a bitbase endgame, keeps only the root moves that hold the best exact result, so
+         * the search can never throw away a win or walk into a loss. The search then picks among them.
+         */
+        private int keepBitbaseBest(int[] moves, int count) {
+            if (Bitbases.probe(board) == Bitbases.NOT_COVERED) return count;
+            int best = Bitbases.LOSS;
+            int[] results = new int[count];
+            for (int i = 0; i < count; i++) {
+                board.makeMove(moves[i]);
+                results[i] = -Bitbases.probe(board);
+                board.unmakeMove(moves[i]);
+                best = Math.max(best, results[i]);
+            }
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (results[i] == best) moves[kept++] = moves[i];
+            }
+            return kept;
+        }
+
+        /**
+         * Searches the root in a narrow window around the previous iteration's score, widening
+         * it on the side that failed until the score falls inside. Shallow iterations and mate
+         * scores use a full window.
+         */
+        private int searchWithAspiration(int[] moves, int count, int depth) {
+            int delta = ASPIRATION_WINDOW;
+            int alpha = -INFINITY, beta = INFINITY;
+            if (aspirationWindows && depth >= 4 && Math.abs(rootScore) < MATE_BOUND) {
+                alpha = rootScore - delta;
+                beta = rootScore + delta;
+            }
+            while (true) {
+                int bestMove = searchRoot(moves, count, depth, alpha, beta);
+                if (aborted) return Moves.NONE;
+                if (rootScore <= alpha) {
+                    delta *= 4;
+                    alpha = Math.max(-INFINITY, rootScore - delta);
+                } else if (rootScore >= beta) {
+                    delta *= 4;
+                    beta = Math.min(INFINITY, rootScore + delta);
+                    moveToFront(moves, count, Moves.key(bestMove));
+                } else {
+                    return bestMove;
+                }
+            }
+        }
+
+        private int searchRoot(int[] moves, int count, int depth, int alpha, int beta) {
+            int originalAlpha = alpha;
+            int bestMove = Moves.NONE;
+            int bestValue = -INFINITY;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                board.makeMove(move);
+                int moveValue;
+                if (i == 0 || !principalVariationSearch) {
+                    moveValue = -negamax(depth - 1, 1, -beta, -alpha, true);
+                } else {
+                    moveValue = -negamax(depth - 1, 1, -alpha - 1, -alpha, true);
+                    if (moveValue > alpha && moveValue < beta) {
+                        moveValue = -negamax(depth - 1, 1, -beta, -alpha, true);
+                    }
+                }
+                board.unmakeMove(move);
+                if (aborted) return Moves.NONE;
+
+                if (bestMove == Moves.NONE || moveValue > bestValue) {
+                    bestValue = moveValue;
+                    bestMove = move;
+                }
+                alpha = Math.max(alpha, moveValue);
+                if (alpha >= beta) break;
+            }
+            int bound = bestValue <= originalAlpha ? TranspositionTable.UPPER
+                    : bestValue >= beta ? TranspositionTable.LOWER
+                    : TranspositionTable.EXACT;
+            table.store(board.getZobristKey(), depth, bound, bestValue, Moves.key(bestMove));
+            rootScore = bestValue;
+            return bestMove;
+        }
+
+        /** Polled from the search: the clock, the shared node count and the stop flag are only read every 1024 nodes. */
+        private boolean shouldAbort() {
+            if (aborted) return true;
+            // The main thread always finishes depth 1 so there is a move to return.
+            if (completedDepth == 0 && id == 0) return false;
+            if (nodes >= nodeLimit) {
+                aborted = true;
+            } else if ((nodes & 1023) == 0) {
+                long total = sharedNodes.addAndGet(1024);
+                aborted = stop || total >= nodeLimit || (!pondering && System.nanoTime() >= deadline);
+            }
+            return aborted;
+        }
+
+        /** Static evaluation from White's point of view. */
+        private int evaluate() {
+            if (board.getNetwork() != null) return board.evaluateNnue();
+            return pawnStructure ? board.evaluate(pawns) : board.evaluateMaterial();
+        }
+
+        /** allowNull is false right after a null move, so two are never played in a row. */
+        private int negamax(int depth, int ply, int alpha, int beta, boolean allowNull) {
+            nodes++;
+            if (shouldAbort()) return 0;
+            boolean isWhite = board.isWhiteToMove();
+            if (Long.bitCount(board.getOccupied()) <= 3) {
+                // Bitbase draws are exact at any depth; wins and losses still get searched for a mate.
+                int result = Bitbases.probe(board);
+                if (result == Bitbases.DRAW) return 0;
+                if (depth == 0 && result != Bitbases.NOT_COVERED) {
+                    int score = KNOWN_WIN + Bitbases.progress(board);
+                    return result == Bitbases.WIN ? score : -score;
+                }
+            }
+            if (depth <= 0) {
+                if (quiescence) return quiesce(ply, alpha, beta);
+                int eval = evaluate();
+                return isWhite ? eval : -eval;
+            }
+
+            long key = board.getZobristKey();
+            long entry = table.probe(key);
+            int hashMove = 0;
+            if (entry != 0L) {
+                hashMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+
+            boolean inCheck = board.isInCheck(isWhite);
+            // Null move: if passing still fails high, a real move almost certainly would too.
+            // Not in check, not in a null window around a mate, and not with only king and pawns
+            // left, where passing may be the only good move (zugzwang).
+            if (nullMovePruning && allowNull && !inCheck && depth >= 3 && Math.abs(beta) < MATE_BOUND
+                    && hasPieces(isWhite) && (isWhite ? evaluate() : -evaluate()) >= beta) {
+                int reduction = depth >= 7 ? 3 : 2;
+                board.makeNullMove();
+                int score = -negamax(depth - 1 - reduction, ply + 1, -beta, -beta + 1, false);
+                board.unmakeNullMove();
+                if (aborted) return 0;
+                // A mate seen after passing is not a proven mate.
+                if (score >= beta) return score >= MATE_BOUND ? beta : score;
+            }
+
+            int originalAlpha = alpha;
+            int bestEval = -INFINITY;
+            int bestMove = Moves.NONE;
+            int[] moves = moveStack[ply];
+            int count = board.generateMoves(moves);
+            if (count == 0) {
+                return inCheck ? -MATE + ply : 0;
+            }
+            if (moveOrdering) {
+                orderer.order(board, moves, count, hashMove, ply);
+            } else {
+                orderHashMove(moves, count, hashMove);
+            }
+            interiorNodes++;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                board.makeMove(move);
+                int eval;
+                if (i == 0) {
+                    eval = -negamax(depth - 1, ply + 1, -beta, -alpha, true);
+                } else {
+                    // Late quiet moves that do not give check are searched shallower first;
+                    // with PVS, every move after the first is tried with a null window first.
+                    int reduction = 0;
+                    if (lateMoveReductions && depth >= 3 && i >= 3 && !inCheck
+                            && !Moves.isCapture(move) && !Moves.isPromotion(move) && !board.isInCheck(!isWhite)) {
+                        reduction = i >= 6 && depth >= 6 ? 2 : 1;
+                    }
+                    int scoutBeta = principalVariationSearch ? alpha + 1 : beta;
+                    eval = -negamax(depth - 1 - reduction, ply + 1, -scoutBeta, -alpha, true);
+                    if (eval > alpha && reduction > 0) {
+                        eval = -negamax(depth - 1, ply + 1, -scoutBeta, -alpha, true);
+                    }
+                    if (eval > alpha && eval < beta && scoutBeta != beta) {
+                        eval = -negamax(depth - 1, ply + 1, -beta, -alpha, true);
+                    }
+                }
+                board.unmakeMove(move);
+                if (aborted) return 0;
+                if (eval > bestEval) {
+                    bestEval = eval;
+                    bestMove = move;
+                }
                 alpha = Math.max(alpha, eval);
-                if (beta <= alpha) {
+                if (alpha >= beta) {
+                    orderer.recordCutoff(move, depth, ply);
+                    cutoffs++;
+                    if (i == 0) firstMoveCutoffs++;
                     break;
                 }
             }
-            return maxEval;
-        } else {
-            int minEval = Integer.MAX_VALUE;
-            for (Move move : board.getLegalMoves(false)) {
-                Board nextBoard = new Board(board);
-                nextBoard.makeMove(move);
-                int eval = minimax(nextBoard, depth - 1, alpha, beta, true);
-                minEval = Math.min(minEval, eval);
-                beta = Math.min(beta, eval);
-                if (beta <= alpha) {
-                    break;
+
+            int bound = bestEval <= originalAlpha ? TranspositionTable.UPPER
+                    : bestEval >= beta ? TranspositionTable.LOWER
+                    : TranspositionTable.EXACT;
+            table.store(key, depth, bound, scoreToTable(bestEval, ply), Moves.key(bestMove));
+            return bestEval;
+        }
+
+        /**
+         * Captures-only search below the nominal depth. The side to move may "stand pat" on the
+         * static evaluation instead of capturing; in check it must answer with any legal move.
+         * Underpromotions are skipped outside check.
+         */
+        private int quiesce(int ply, int alpha, int beta) {
+            nodes++;
+            if (shouldAbort()) return 0;
+            boolean isWhite = board.isWhiteToMove();
+            int standPat = isWhite ? evaluate() : -evaluate();
+            if (ply >= MAX_PLY) return standPat;
+
+            boolean inCheck = board.isInCheck(isWhite);
+            int[] moves = moveStack[ply];
+            int count;
+            int bestEval;
+            if (inCheck) {
+                count = board.generateMoves(moves);
+                if (count == 0) return -MATE + ply;
+                bestEval = -INFINITY;
+            } else {
+                if (standPat >= beta) return standPat;
+                alpha = Math.max(alpha, standPat);
+                bestEval = standPat;
+                count = board.generateCaptures(moves);
+            }
+            orderer.orderCaptures(board, moves, count);
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (!inCheck && Moves.promotion(move) > Piece.WHITE_QUEEN.ordinal()) continue;
+                board.makeMove(move);
+                int eval = -quiesce(ply + 1, -beta, -alpha);
+                board.unmakeMove(move);
+                if (aborted) return 0;
+                if (eval > bestEval) {
+                    bestEval = eval;
+                    alpha = Math.max(alpha, eval);
+                    if (alpha >= beta) break;
                 }
             }
-            return minEval;
+            return bestEval;
+        }
+
+        /** True if the side has a piece other than its king and pawns. */
+        private boolean hasPieces(boolean isWhite) {
+            int offset = isWhite ? 0 : 6;
+            for (int type = Piece.WHITE_QUEEN.ordinal(); type <= Piece.WHITE_KNIGHT.ordinal(); type++) {
+                if (board.getBitboard(PIECES[type + offset]) != 0L) return true;
+            }
+            return false;
+        }
+    }
+
+    /** Mate scores are stored relative to the node, so they stay correct when the position is reached at another ply. */
+    private static int scoreToTable(int score, int ply) {
+        if (score > MATE_BOUND) return score + ply;
+        if (score < -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score > MATE_BOUND) return score - ply;
+        if (score < -MATE_BOUND) return score + ply;
+        return score;
+    }
+
+    /**
+     * For a score that means mate, the number of moves (not plies) until mate: positive if the
+     * side to move mates, negative if it is mated. 0 for any other score.
+     */
+    public static int mateInMoves(int score) {
+        if (score > MATE_BOUND) return (MATE - score + 1) / 2;
+        if (score < -MATE_BOUND) return -(MATE + score) / 2;
+        return 0;
+    }
+
+    /**
+     * For a score that is not mate, the centipawns to report. A won bitbase position the search
+     * has not yet seen through to mate scores KNOWN_WIN and up, which would read as 200 pawns;
+     * it is brought back to REPORTED_WIN plus its progress (see Bitbases.progress).
+     */
+    public static int centipawns(int score) {
+        if (score >= KNOWN_WIN && score <= MATE_BOUND) return score - KNOWN_WIN + REPORTED_WIN;
+        if (score <= -KNOWN_WIN && score >= -MATE_BOUND) return score + KNOWN_WIN - REPORTED_WIN;
+        return score;
+    }
+
+    /** Moves the transposition table's best move, if present, to the front of the buffer. */
+    private static void orderHashMove(int[] moves, int count, int hashMove) {
+        if (hashMove != 0) moveToFront(moves, count, hashMove);
+    }
+
+    /** Moves the move with the given key to the front, keeping the others in order. */
+    private static void moveToFront(int[] moves, int count, int key) {
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (Moves.key(move) == key) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
         }
     }
 }
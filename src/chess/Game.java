@@ -1,19 +1,76 @@
 package chess;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * Game.java
  * Manages the game state and provides accessors for the WebServer.
- * This version is updated to handle the new isPromotion flag in Move objects.
+ * This version is updated to handle the promotion piece in Move objects.
+ * The AI plays from the opening book (see OpeningBook) while the position is in it.
+ * Moves played through playMove are recorded; their count is the board's version, which
+ * lets clients ask for only the moves since the version they have.
  */
 public class Game {
     private Board board;
     private ChessAI ai;
+    private OpeningBook book = OpeningBook.getDefault();
+    // Moves played so far, in coordinate notation
+    private final List<String> history = new ArrayList<>();
+    private volatile int version;
 
     public Game() {
         this.board = new Board();
         this.ai = new ChessAI();
     }
 
+    /** A game whose AI uses the given (possibly shared) transposition table. */
+    public Game(TranspositionTable table) {
+        this.board = new Board();
+        this.ai = new ChessAI(table);
+    }
+
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * The AI's move in the given position (the game's own board or a copy of it): a book move
+     * if the position is in the book, otherwise the result of a search within the limits.
+     * Book moves are played without a search, so the listener is not called for them.
+     */
+    public Move findAiMove(Board position, SearchLimits limits, Consumer<SearchProgress> listener) {
+        int bookMove = book.probe(position);
+        if (bookMove != Moves.NONE) {
+            return Moves.toMove(bookMove);
+        }
+        return ai.findBestMove(position, limits, listener);
+    }
+
+    /** The player's reply the AI expects in the current position, or null if it has no guess. */
+    public Move expectedReply() {
+        int move = ai.getHashMove(board);
+        return move == Moves.NONE ? null : Moves.toMove(move);
+    }
+
+    /** Plays a legal move on the game's board and records it, moving the version on by one. */
+    public void playMove(Move move) {
+        board.makeMove(move);
+        history.add(move.toCoordinates());
+        version = history.size();
+    }
+
+    /** The number of moves played; it changes whenever the board does. */
+    public int getVersion() {
+        return version;
+    }
+
+    /** The moves played after the given version, in coordinate notation. */
+    public List<String> movesSince(int version) {
+        return List.copyOf(history.subList(version, history.size()));
+    }
+
     public Board getBoard() {
         return board;
     }
@@ -22,8 +79,12 @@ public class Game {
         return ai;
     }
 
+    /**
+     * Parses a move in coordinate notation, e.g. "e2e4". A fifth letter picks the promotion
+     * piece ("e7e8n"); a promotion without one becomes a queen.
+     */
     public Move parseMove(String moveStr) {
-        if (moveStr == null || moveStr.length() != 4) {
+        if (moveStr == null || (moveStr.length() != 4 && moveStr.length() != 5)) {
             return null;
         }
         try {
@@ -42,7 +103,18 @@ public class Game {
             boolean isPromotion = (movingPiece == Piece.WHITE_PAWN && endRow == 0) ||
                     (movingPiece == Piece.BLACK_PAWN && endRow == 7);
 
-            return new Move(startRow, startCol, endRow, endCol, board.getPiece(endRow, endCol), isPromotion);
+            if (moveStr.length() == 5 && !isPromotion) {
+                return null;
+            }
+            Piece promotion = null;
+            if (isPromotion) {
+                int index = moveStr.length() == 5 ? "qrbn".indexOf(moveStr.charAt(4)) : 0;
+                if (index < 0) {
+                    return null;
+                }
+                promotion = Piece.values()[Piece.WHITE_QUEEN.ordinal() + index + (movingPiece.isWhite() ? 0 : 6)];
+            }
+            return new Move(startRow, startCol, endRow, endCol, board.getPiece(endRow, endCol), promotion);
         } catch (Exception e) {
             return null;
         }
@@ -0,0 +1,201 @@
+package chess;
+
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * GameRegistry.java
+ * The games hosted by the WebServer, keyed by a random game id.
+ * Requests for different games run in parallel; each Session has a lock so that requests
+ * for the same game are handled one at a time.
+ * Sessions idle for longer than the idle timeout are evicted by a background sweep, and the
+ * number of sessions is capped: starting a game at the cap evicts the least recently used ones.
+ * Finding them scans every session, so each scan evicts the oldest 1% at once; only one
+ * create() in that many pays for the scan. An evicted game's ponder search is cancelled.
+ * All games share one transposition table, so a session only holds its board and the AI's
+ * move-ordering tables (a few tens of KB). The searches do not age the shared table; the sweep thread
+ * moves it to a new generation every few seconds, so entries from searches that have ended are
+ * replaced first while a game's next search still finds its recent ones.
+ */
+public class GameRegistry {
+
+    /** Session cap, configurable with -Dchess.maxGames=N. */
+    public static final int DEFAULT_MAX_GAMES = Integer.getInteger("chess.maxGames", 10_000);
+    /** Idle timeout, configurable with -Dchess.gameIdleMinutes=N. */
+    public static final int DEFAULT_IDLE_MINUTES = Integer.getInteger("chess.gameIdleMinutes", 30);
+    /** Size of the shared transposition table, configurable with -Dchess.hashMb=N. */
+    public static final int DEFAULT_HASH_MB = Integer.getInteger("chess.hashMb", 64);
+    // Seconds per generation of the shared table; its six-bit age wraps after 64 of them
+    private static final long TABLE_GENERATION_SECONDS = 5;
+    // Share of the cap evicted by one least-recently-used scan
+    private static final int EVICTION_BATCH_DIVISOR = 100;
+
+    public static final class Session {
+        private final String id;
+        private final Game game;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long lastAccess = System.nanoTime();
+        private volatile MoveJob job;
+        private volatile Ponder ponder;
+        private volatile BoardResponse boardResponse;
+        private volatile boolean closed;
+
+        Session(String id, Game game) {
+            this.id = id;
+            this.game = game;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Game getGame() {
+            return game;
+        }
+
+        /** The latest AI move job of this game, or null if the AI has not moved yet. */
+        public MoveJob getJob() {
+            return job;
+        }
+
+        public void setJob(MoveJob job) {
+            this.job = job;
+        }
+
+        /** The AI's search on the player's time, or null if it is not pondering. */
+        public Ponder getPonder() {
+            return ponder;
+        }
+
+        /** Sets the game's ponder search; on an evicted game it is cancelled at once. */
+        public void setPonder(Ponder ponder) {
+            this.ponder = ponder;
+            if (closed && ponder != null) ponder.cancel();
+        }
+
+        /** Called once the session is evicted: nobody can hit or cancel its ponder search any more. */
+        private void close() {
+            closed = true;
+            Ponder current = ponder;
+            if (current != null) current.cancel();
+        }
+
+        /**
+         * The encoded board for the game's current version, built with encoder by the first
+         * request after a move and shared by every request until the next one. Takes the lock
+         * only to build it.
+         */
+        public BoardResponse getBoardResponse(Function<Game, BoardResponse> encoder) {
+            BoardResponse cached = boardResponse;
+            if (cached != null && cached.version() == game.getVersion()) return cached;
+            lock.lock();
+            try {
+                cached = boardResponse;
+                if (cached == null || cached.version() != game.getVersion()) {
+                    cached = encoder.apply(game);
+                    boardResponse = cached;
+                }
+                return cached;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Held while a request reads or changes this game. */
+        public ReentrantLock getLock() {
+            return lock;
+        }
+    }
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final TranspositionTable table;
+    private final int maxGames;
+    private final long idleNanos;
+
+    public GameRegistry() {
+        this(TranspositionTable.shared(DEFAULT_HASH_MB), DEFAULT_MAX_GAMES, DEFAULT_IDLE_MINUTES);
+    }
+
+    public GameRegistry(TranspositionTable table, int maxGames, int idleMinutes) {
+        if (maxGames < 1 || idleMinutes < 1) {
+            throw new IllegalArgumentException("Need at least one game and one idle minute: " + maxGames + ", " + idleMinutes);
+        }
+        this.table = table;
+        this.maxGames = maxGames;
+        this.idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+    }
+
+    /** Starts sweeping idle sessions once a minute, and ageing the shared table, on a daemon thread. */
+    public void startEviction() {
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chess-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+        sweeper.scheduleAtFixedRate(table::nextGeneration, TABLE_GENERATION_SECONDS, TABLE_GENERATION_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    public Session create() {
+        while (sessions.size() >= maxGames) {
+            evictLeastRecentlyUsed();
+        }
+        Session session = new Session(UUID.randomUUID().toString(), new Game(table));
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    /** The session with this id, or null if there is none (or it was evicted). Counts as activity. */
+    public Session get(String id) {
+        if (id == null) return null;
+        Session session = sessions.get(id);
+        if (session != null) {
+            session.lastAccess = System.nanoTime();
+        }
+        return session;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /** Removes the sessions that have not been used within the idle timeout. */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (Session session : sessions.values()) {
+            if (now - session.lastAccess > idleNanos) remove(session);
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        int batch = Math.max(1, maxGames / EVICTION_BATCH_DIVISOR);
+        // The most recently used candidate at the head, to make room when an older session turns up.
+        // lastAccess is read once per session, as requests keep changing it during the scan.
+        PriorityQueue<Candidate> oldest = new PriorityQueue<>(batch + 1,
+                (a, b) -> Long.signum(b.lastAccess() - a.lastAccess()));
+        for (Session session : sessions.values()) {
+            oldest.add(new Candidate(session, session.lastAccess));
+            if (oldest.size() > batch) oldest.poll();
+        }
+        for (Candidate candidate : oldest) {
+            remove(candidate.session());
+        }
+    }
+
+    private record Candidate(Session session, long lastAccess) {
+    }
+
+    private void remove(Session session) {
+        if (sessions.remove(session.id, session)) {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics.java
+ * Process-wide counters, gauges and histograms for the engine and the web server, rendered in
+ * the Prometheus text format by WebServer's /metrics endpoint.
+ * Counts are kept in LongAdders, which stripe their cells across threads, so concurrent
+ * searches and requests do not contend on a shared counter. A series is picked by a label
+ * string such as {@code handler="/move",code="200"}, or "" for none.
+ * Searches record their totals once at the end (see ChessAI), never per node.
+ */
+public final class Metrics {
+
+    // Search duration and HTTP latency, in seconds
+    private static final double[] LATENCY_BUCKETS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final double[] DEPTH_BUCKETS = {1, 2, 4, 6, 8, 10, 12, 16, 20, 30, 64};
+    private static final double[] BRANCHING_BUCKETS = {1.5, 2, 2.5, 3, 4, 5, 6, 8, 12, 20};
+
+    private static final List<Metric> REGISTRY = new ArrayList<>();
+
+    public static final Counter SEARCHES = counter("chess_searches_total", "Searches run by ChessAI");
+    public static final Counter SEARCH_NODES = counter("chess_search_nodes_total", "Nodes searched, all threads");
+    public static final Counter SEARCH_INTERIOR_NODES = counter("chess_search_interior_nodes_total",
+            "Full-width nodes that searched at least one move");
+    public static final Counter SEARCH_CUTOFFS = counter("chess_search_cutoffs_total",
+            "Full-width nodes that failed high (beta cutoffs)");
+    public static final Counter SEARCH_FIRST_MOVE_CUTOFFS = counter("chess_search_first_move_cutoffs_total",
+            "Beta cutoffs on the first move searched");
+    public static final Counter PAWN_TABLE_PROBES = counter("chess_pawn_table_probes_total",
+            "Pawn-structure lookups by the evaluation");
+    public static final Counter PAWN_TABLE_HITS = counter("chess_pawn_table_hits_total",
+            "Pawn-structure lookups answered from the pawn table");
+    public static final Histogram SEARCH_SECONDS = histogram("chess_search_seconds",
+            "Time of one findBestMove call", LATENCY_BUCKETS);
+    public static final Histogram SEARCH_DEPTH = histogram("chess_search_depth",
+            "Deepest completed iteration of a search", DEPTH_BUCKETS);
+    public static final Histogram SEARCH_BRANCHING_FACTOR = histogram("chess_search_branching_factor",
+            "Nodes of the last iteration over the one before (effective branching factor)", BRANCHING_BUCKETS);
+    public static final Gauge SEARCH_LAST_NPS = gauge("chess_search_last_nodes_per_second",
+            "Nodes per second of the last search to finish");
+
+    public static final Counter HTTP_REQUESTS = counter("chess_http_requests_total", "HTTP requests by handler and status");
+    public static final Histogram HTTP_SECONDS = histogram("chess_http_request_seconds",
+            "Time from a request's dispatch to its handler returning", LATENCY_BUCKETS);
+    public static final Gauge HTTP_IN_FLIGHT = gauge("chess_http_requests_in_flight", "HTTP requests being handled");
+    public static final Histogram JOB_QUEUE_SECONDS = histogram("chess_job_queue_seconds",
+            "Time a move job waited for a search thread", LATENCY_BUCKETS);
+    public static final Histogram SCHEDULER_BUDGET_SECONDS = histogram("chess_scheduler_budget_seconds",
+            "Time budget a move search was given for the load when it started", LATENCY_BUCKETS);
+    public static final Counter SCHEDULER_PREEMPTIONS = counter("chess_scheduler_preemptions_total",
+            "Running move searches whose budget was cut because more arrived");
+    public static final Counter SCHEDULER_DEPTH_CAPS = counter("chess_scheduler_depth_caps_total",
+            "Move searches started with a capped depth because searches were queueing");
+    public static final Gauge JOBS_RUNNING = gauge("chess_jobs_running", "Move jobs queued or searching");
+    public static final Gauge GAMES = gauge("chess_games", "Hosted games");
+
+    private Metrics() {
+    }
+
+    /** A metric family: prints its HELP and TYPE lines and its series. */
+    private abstract static class Metric {
+        final String name;
+        final String help;
+
+        Metric(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        abstract String type();
+
+        abstract void renderSeries(StringBuilder out);
+    }
+
+    /** A monotonic count per label set. */
+    public static final class Counter extends Metric {
+        private final Map<String, LongAdder> series = new ConcurrentHashMap<>();
+
+        private Counter(String name, String help) {
+            super(name, help);
+        }
+
+        public void increment() {
+            add("", 1);
+        }
+
+        public void add(long amount) {
+            add("", amount);
+        }
+
+        public void add(String labels, long amount) {
+            series.computeIfAbsent(labels, l -> new LongAdder()).add(amount);
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void renderSeries(StringBuilder out) {
+            if (series.isEmpty()) {
+                line(out, name, "", 0);
+            }
+            series.forEach((labels, value) -> line(out, name, labels, value.sum()));
+        }
+    }
+
+    /** A value that goes up and down, or is read from elsewhere when rendered. */
+    public static final class Gauge extends Metric {
+        private final LongAdder value = new LongAdder();
+        private volatile LongSupplier supplier;
+
+        private Gauge(String name, String help) {
+            super(name, help);
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void decrement() {
+            value.decrement();
+        }
+
+        public void set(long newValue) {
+            value.reset();
+            value.add(newValue);
+        }
+
+        /** Reads the gauge from the supplier instead, e.g. the size of a registry. */
+        public void track(LongSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        String type() {
+            return "gauge";
+        }
+
+        @Override
+        void renderSeries(StringBuilder out) {
+            LongSupplier current = supplier;
+            line(out, name, "", current != null ? current.getAsLong() : value.sum());
+        }
+    }
+
+    /** Cumulative buckets, a sum and a count per label set. */
+    public static final class Histogram extends Metric {
+        private final double[] bounds;
+        private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+        private Histogram(String name, String help, double[] bounds) {
+            super(name, help);
+            this.bounds = bounds;
+        }
+
+        private final class Series {
+            // counts[i] observations at or below bounds[i] and above the bound before; the last is +Inf
+            final LongAdder[] counts = new LongAdder[bounds.length + 1];
+            // Sum in millionths, so it can be a LongAdder too
+            final LongAdder micros = new LongAdder();
+
+            Series() {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = new LongAdder();
+                }
+            }
+        }
+
+        public void observe(double value) {
+            observe("", value);
+        }
+
+        public void observe(String labels, double value) {
+            Series s = series.computeIfAbsent(labels, l -> new Series());
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) bucket++;
+            s.counts[bucket].increment();
+            s.micros.add(Math.round(value * 1e6));
+        }
+
+        /** Observes the time since startNanos, in seconds. */
+        public void observeSince(String labels, long startNanos) {
+            observe(labels, (System.nanoTime() - startNanos) / 1e9);
+        }
+
+        @Override
+        String type() {
+            return "histogram";
+        }
+
+        @Override
+        void renderSeries(StringBuilder out) {
+            series.forEach((labels, s) -> {
+                String separator = labels.isEmpty() ? "" : labels + ",";
+                long cumulative = 0;
+                for (int i = 0; i < s.counts.length; i++) {
+                    cumulative += s.counts[i].sum();
+                    String le = i < bounds.length ? format(bounds[i]) : "+Inf";
+                    line(out, name + "_bucket", separator + "le=\"" + le + "\"", cumulative);
+                }
+                out.append(name).append("_sum").append(labels.isEmpty() ? "" : "{" + labels + "}")
+                        .append(' ').append(format(s.micros.sum() / 1e6)).append('\n');
+                line(out, name + "_count", labels, cumulative);
+            });
+        }
+    }
+
+    private static Counter counter(String name, String help) {
+        return register(new Counter(name, help));
+    }
+
+    private static Gauge gauge(String name, String help) {
+        return register(new Gauge(name, help));
+    }
+
+    private static Histogram histogram(String name, String help, double[] bounds) {
+        return register(new Histogram(name, help, bounds));
+    }
+
+    private static <M extends Metric> M register(M metric) {
+        REGISTRY.add(metric);
+        return metric;
+    }
+
+    /** Label string for one label, with the value escaped as the text format requires. */
+    public static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    /** All metrics in the Prometheus text exposition format (version 0.0.4). */
+    public static String render() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Metric metric : REGISTRY) {
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type()).append('\n');
+            metric.renderSeries(out);
+        }
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -2,8 +2,9 @@ package chess;
 
 /**
  * Move.java
- * A record to represent a move.
- * It now includes an isPromotion flag to correctly handle pawn promotions.
+ * A record to represent a move at the API boundary (parsed requests and the AI's reply).
+ * The engine itself works on packed int moves, see Moves.
+ * promotion is the piece a pawn turns into, or null if the move is not a promotion.
  */
 public record Move(
         int startRow,
@@ -11,6 +12,22 @@ public record Move(
         int endRow,
         int endCol,
         Piece pieceCaptured,
-        boolean isPromotion
+        Piece promotion
 ) {
+
+    /** A move that promotes to a queen when isPromotion is set. */
+    public Move(int startRow, int startCol, int endRow, int endCol, Piece pieceCaptured, boolean isPromotion) {
+        this(startRow, startCol, endRow, endCol, pieceCaptured,
+                isPromotion ? (endRow == 0 ? Piece.WHITE_QUEEN : Piece.BLACK_QUEEN) : null);
+    }
+
+    public boolean isPromotion() {
+        return promotion != null;
+    }
+
+    /** Coordinate notation, e.g. "e2e4", with the promotion piece in lower case ("e7e8q"). */
+    public String toCoordinates() {
+        String coordinates = "" + (char) ('a' + startCol) + (8 - startRow) + (char) ('a' + endCol) + (8 - endRow);
+        return isPromotion() ? coordinates + promotion.getSymbol().toLowerCase() : coordinates;
+    }
 }
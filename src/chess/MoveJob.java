@@ -0,0 +1,87 @@
+package chess;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MoveJob.java
+ * One AI move being searched in the background for a hosted game (see WebServer).
+ * The search publishes its progress here after every completed depth and its result at the
+ * end; readers wait for the next change with awaitChange. Only the latest progress is kept,
+ * so a slow reader skips intermediate depths rather than falling behind.
+ */
+public class MoveJob {
+
+    /** What a reader sees: the latest progress (or null), and once done the AI's move and the outcome. */
+    public record Snapshot(long version, SearchProgress progress, boolean done, Move aiMove, String gameOver,
+                           String error) {
+    }
+
+    private final String id;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private Snapshot snapshot = new Snapshot(0, null, false, null, null, null);
+
+    public MoveJob(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void publish(SearchProgress progress) {
+        update(new Snapshot(0, progress, false, null, null, null));
+    }
+
+    /** Marks the job finished; gameOver is the X-Game-Over text, or null if the game goes on. */
+    public void finish(Move aiMove, String gameOver) {
+        update(new Snapshot(0, current().progress(), true, aiMove, gameOver, null));
+    }
+
+    public void fail(String error) {
+        update(new Snapshot(0, current().progress(), true, null, null, error));
+    }
+
+    public Snapshot current() {
+        lock.lock();
+        try {
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isDone() {
+        return current().done();
+    }
+
+    /**
+     * Waits until there is a snapshot newer than the given version, or the timeout passes,
+     * and returns the current snapshot either way.
+     */
+    public Snapshot awaitChange(long seenVersion, long timeoutMillis) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (snapshot.version() == seenVersion && !snapshot.done() && nanos > 0) {
+                nanos = changed.awaitNanos(nanos);
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(Snapshot next) {
+        lock.lock();
+        try {
+            snapshot = new Snapshot(snapshot.version() + 1, next.progress(), next.done(), next.aiMove(),
+                    next.gameOver(), next.error());
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * MoveOrderer.java
+ * Sorts generated moves so that alpha-beta finds its cutoffs early:
+ * the transposition table move first, then captures by MVV-LVA (most valuable victim,
+ * least valuable attacker), then promotions, then the two killer moves of the ply,
+ * then quiet moves by their history score.
+ * Killers and history are learned during the search, so each search thread owns one.
+ * Moves are packed ints (see Moves) and are sorted in place in the caller's buffer.
+ */
+public class MoveOrderer {
+
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 26;
+    private static final int PROMOTION_SCORE = 1 << 25;
+    private static final int FIRST_KILLER_SCORE = 1 << 24;
+    private static final int SECOND_KILLER_SCORE = FIRST_KILLER_SCORE - 1;
+    // History scores are halved whenever one reaches this, so they stay below the killers.
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    private final int[][] killers = new int[SearchLimits.MAX_DEPTH + 1][2];
+    private final int[] history = new int[64 * 64];
+    private final int[] scores = new int[Moves.MAX_MOVES];
+
+    /** Forgets the killers and ages the history before a new search. */
+    public void newSearch() {
+        for (int[] slots : killers) {
+            Arrays.fill(slots, 0);
+        }
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    /** Sorts the first count moves of the buffer; hashMove is a move key (see Moves.key) or 0. */
+    public void order(Board board, int[] moves, int count, int hashMove, int ply) {
+        int[] plyKillers = killers[ply];
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int key = Moves.key(move);
+            int score;
+            if (key == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (Moves.isCapture(move)) {
+                score = captureScore(board, move);
+            } else if (Moves.isPromotion(move)) {
+                // Queen first: the promotion field counts up from queen to knight.
+                score = PROMOTION_SCORE - Moves.promotion(move);
+            } else if (key == plyKillers[0]) {
+                score = FIRST_KILLER_SCORE;
+            } else if (key == plyKillers[1]) {
+                score = SECOND_KILLER_SCORE;
+            } else {
+                score = history[key & 0xFFF];
+            }
+            scores[i] = score;
+        }
+        sort(moves, count);
+    }
+
+    /**
+     * Sorts captures by MVV-LVA and promotions by piece, for the quiescence search, which
+     * has no hash move or killers. Any quiet moves (check evasions) go last.
+     */
+    public void orderCaptures(Board board, int[] moves, int count) {
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (Moves.isCapture(move)) {
+                scores[i] = captureScore(board, move);
+            } else if (Moves.isPromotion(move)) {
+                scores[i] = PROMOTION_SCORE - Moves.promotion(move);
+            } else {
+                scores[i] = 0;
+            }
+        }
+        sort(moves, count);
+    }
+
+    private static int captureScore(Board board, int move) {
+        int from = Moves.from(move);
+        Piece attacker = board.getPiece(from >>> 3, from & 7);
+        return CAPTURE_SCORE + Math.abs(Moves.captured(move).getValue()) * 16 - Math.abs(attacker.getValue());
+    }
+
+    private void sort(int[] moves, int count) {
+        // Insertion sort, highest score first: lists are short and often nearly sorted.
+        for (int i = 1; i < count; i++) {
+            int score = scores[i];
+            int move = moves[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                scores[j + 1] = scores[j];
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            scores[j + 1] = score;
+            moves[j + 1] = move;
+        }
+    }
+
+    /** Records a quiet move that caused a beta cutoff as a killer for its ply and in the history table. */
+    public void recordCutoff(int move, int depth, int ply) {
+        if (Moves.isCapture(move) || Moves.isPromotion(move)) return;
+        int key = Moves.key(move);
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != key) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = key;
+        }
+        int index = key & 0xFFF;
+        history[index] += depth * depth;
+        if (history[index] >= HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+}
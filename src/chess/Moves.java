@@ -0,0 +1,156 @@
+package chess;
+
+/**
+ * Moves.java
+ * Packed int encoding of a move, used by move generation and the search so that no
+ * object is allocated per move. Move records are only built at the API boundary.
+ *
+ *   bits  0-5   from square (row * 8 + col, see Bitboards)
+ *   bits  6-11  to square
+ *   bits 12-14  promotion: the white piece ordinal of the new piece (queen 1 .. knight 4), 0 if none
+ *   bits 16-19  captured piece ordinal + 1, 0 if none
+ *   bit  20     en passant capture
+ *   bit  21     castling (the king's move; the rook follows)
+ *   bit  22     pawn double push
+ *
+ * The low 15 bits (from, to, promotion) identify a move within a position; they are what the
+ * transposition table, killers and history store. 0 is never a valid move.
+ */
+public final class Moves {
+
+    /** Upper bound on the number of legal moves in any position (the known maximum is 218). */
+    public static final int MAX_MOVES = 256;
+
+    public static final int NONE = 0;
+    public static final int EN_PASSANT = 1 << 20;
+    public static final int CASTLING = 1 << 21;
+    public static final int DOUBLE_PUSH = 1 << 22;
+    public static final int KEY_MASK = 0x7FFF;
+
+    private static final Piece[] PIECES = Piece.values();
+    private static final char[] PROMOTION_LETTERS = {' ', 'q', 'r', 'b', 'n'};
+
+    private Moves() {
+    }
+
+    public static int encode(int from, int to, Piece captured, int promotion, int flags) {
+        return from | (to << 6) | (promotion << 12) | ((captured == null ? 0 : captured.ordinal() + 1) << 16) | flags;
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /** The promoted-to piece type as a white piece ordinal (1 = queen .. 4 = knight), or 0. */
+    public static int promotion(int move) {
+        return (move >>> 12) & 0x7;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & 0x7000) != 0;
+    }
+
+    /** The captured piece, or null. For en passant this is the pawn beside the target square. */
+    public static Piece captured(int move) {
+        int captured = (move >>> 16) & 0xF;
+        return captured == 0 ? null : PIECES[captured - 1];
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & 0xF0000) != 0;
+    }
+
+    /** The from/to/promotion bits: enough to find the move again in the same position. */
+    public static int key(int move) {
+        return move & KEY_MASK;
+    }
+
+    /** The API-level record for a packed move. */
+    public static Move toMove(int move) {
+        int from = from(move), to = to(move);
+        int promotion = promotion(move);
+        Piece promoted = null;
+        if (promotion != 0) {
+            // White promotes on row 0, black on row 7.
+            promoted = PIECES[promotion + (to < 8 ? 0 : 6)];
+        }
+        return new Move(from >>> 3, from & 7, to >>> 3, to & 7, captured(move), promoted);
+    }
+
+    /**
+     * Finds the legal move of the side to move written in standard algebraic notation
+     * ("Nf3", "exd5", "e8=Q+", "O-O"), or returns NONE if there is no such move or it is ambiguous.
+     */
+    public static int fromSan(Board board, String san) {
+        String s = san.replaceAll("[+#!?]+$", "");
+        int[] moves = new int[MAX_MOVES];
+        int count = board.generateMoves(moves);
+        if (s.equals("O-O") || s.equals("0-0") || s.equals("O-O-O") || s.equals("0-0-0")) {
+            boolean kingside = s.length() == 3;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if ((move & CASTLING) != 0 && (to(move) > from(move)) == kingside) return move;
+            }
+            return NONE;
+        }
+
+        int promotion = 0;
+        int equals = s.indexOf('=');
+        if (equals >= 0) {
+            if (equals + 2 != s.length()) return NONE;
+            promotion = "QRBN".indexOf(s.charAt(equals + 1)) + 1;
+            if (promotion == 0) return NONE;
+            s = s.substring(0, equals);
+        } else if (s.length() > 2 && "QRBN".indexOf(s.charAt(s.length() - 1)) >= 0 && Character.isDigit(s.charAt(s.length() - 2))) {
+            promotion = "QRBN".indexOf(s.charAt(s.length() - 1)) + 1;
+            s = s.substring(0, s.length() - 1);
+        }
+        if (s.length() < 2) return NONE;
+
+        int pieceType = "KQRBN".indexOf(s.charAt(0));
+        if (pieceType < 0) {
+            pieceType = Piece.WHITE_PAWN.ordinal();
+        } else {
+            s = s.substring(1);
+        }
+        int toFile = s.charAt(s.length() - 2) - 'a';
+        int toRank = s.charAt(s.length() - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) return NONE;
+        int to = (7 - toRank) * 8 + toFile;
+        int fromFile = -1, fromRow = -1;
+        for (char c : s.substring(0, s.length() - 2).toCharArray()) {
+            if (c >= 'a' && c <= 'h') fromFile = c - 'a';
+            else if (c >= '1' && c <= '8') fromRow = 7 - (c - '1');
+            else if (c != 'x') return NONE;
+        }
+
+        int found = NONE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = from(move);
+            Piece piece = board.getPiece(from >>> 3, from & 7);
+            if (to(move) != to || piece.ordinal() % 6 != pieceType) continue;
+            if ((fromFile >= 0 && (from & 7) != fromFile) || (fromRow >= 0 && (from >>> 3) != fromRow)) continue;
+            // A promotion written without a piece is taken to be a queen.
+            if (isPromotion(move) && promotion(move) != (promotion == 0 ? Piece.WHITE_QUEEN.ordinal() : promotion)) continue;
+            if (!isPromotion(move) && promotion != 0) continue;
+            if (found != NONE) return NONE;
+            found = move;
+        }
+        return found;
+    }
+
+    /** Coordinate notation, e.g. "e2e4" or "e7e8n". */
+    public static String toString(int move) {
+        int from = from(move), to = to(move);
+        StringBuilder sb = new StringBuilder(5)
+                .append((char) ('a' + (from & 7))).append((char) ('8' - (from >>> 3)))
+                .append((char) ('a' + (to & 7))).append((char) ('8' - (to >>> 3)));
+        if (isPromotion(move)) sb.append(PROMOTION_LETTERS[promotion(move)]);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,255 @@
+package chess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static chess.Bitboards.BLACK;
+import static chess.Bitboards.WHITE;
+
+/**
+ * Nnue.java
+ * An efficiently updatable neural network (NNUE) evaluation, an optional alternative to the
+ * hand-written one (see ChessAI.setNetwork). Its inputs are 768 features, one per piece and
+ * square, seen from each side in turn: from Black's side the colours are swapped and the board
+ * mirrored, so one set of weights serves both. The first layer's output for each side, the
+ * accumulator, is kept by Board and updated as pieces are put and removed, by adding or
+ * subtracting the piece's weight column; a move costs two to four column updates rather than
+ * the whole layer. The output clips both accumulators to [0, QA], side to move first, and takes
+ * their dot product with the output weights.
+ * Weights and accumulators are int16 and the dot product is summed in int. The column updates
+ * and the dot product use the Vector API (see NnueVector, in src-vector) when it is compiled in
+ * and the JVM runs with --add-modules jdk.incubator.vector, and plain loops otherwise or with
+ * -Dchess.nnueScalar=true.
+ * The weights file is big-endian, like the opening book:
+ *
+ *   header  int magic "CHNN" | int version | int hidden size H | int output scale
+ *   body    short feature weights [768][H] | short feature biases [H]
+ *           | short output weights [2H], side to move first | int output bias
+ *
+ * The score is (dot product + output bias) * scale / (QA * QB) centipawns for the side to move.
+ * No trained network ships with the engine; main writes one that reproduces the middlegame
+ * piece-square tables, which checks the file format and the inference against Board's tables.
+ */
+public final class Nnue {
+
+    public static final int MAGIC = 0x43484E4E; // "CHNN"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int FEATURES = 768;
+    /** Ceiling of the clipped accumulator, and fixed-point scale of the output weights. */
+    public static final int QA = 255;
+    public static final int QB = 64;
+    private static final int MAX_HIDDEN = 4096;
+
+    private static final Kernels KERNELS = loadKernels();
+    /** True if the column updates and the dot product use the Vector API. */
+    public static final boolean VECTORIZED = !(KERNELS instanceof ScalarKernels);
+
+    private final int hidden;
+    private final int scale;
+    // featureWeights[feature * hidden + i]: one column of the first layer per feature
+    private final short[] featureWeights;
+    private final short[] featureBiases;
+    private final short[] outputWeights;
+    private final int outputBias;
+
+    public Nnue(int hidden, int scale, short[] featureWeights, short[] featureBiases, short[] outputWeights,
+                int outputBias) {
+        if (hidden <= 0 || hidden > MAX_HIDDEN || featureWeights.length != FEATURES * hidden
+                || featureBiases.length != hidden || outputWeights.length != 2 * hidden) {
+            throw new IllegalArgumentException("Network layers do not match hidden size " + hidden);
+        }
+        this.hidden = hidden;
+        this.scale = scale;
+        this.featureWeights = featureWeights;
+        this.featureBiases = featureBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /** Reads a weights file onto the heap. */
+    public static Nnue open(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a network: " + path);
+        }
+        int hidden = buffer.getInt(8);
+        if (hidden <= 0 || hidden > MAX_HIDDEN || HEADER_BYTES + bodyBytes(hidden) != buffer.limit()) {
+            throw new IOException("Truncated network: " + path);
+        }
+        short[] featureWeights = new short[FEATURES * hidden];
+        short[] featureBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        ShortBuffer shorts = buffer.position(HEADER_BYTES).asShortBuffer();
+        shorts.get(featureWeights).get(featureBiases).get(outputWeights);
+        return new Nnue(hidden, buffer.getInt(12), featureWeights, featureBiases, outputWeights,
+                buffer.getInt(buffer.limit() - 4));
+    }
+
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + (int) bodyBytes(hidden));
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(hidden).putInt(scale);
+        buffer.asShortBuffer().put(featureWeights).put(featureBiases).put(outputWeights);
+        buffer.putInt(buffer.limit() - 4, outputBias);
+        Files.write(path, buffer.array());
+    }
+
+    private static long bodyBytes(int hidden) {
+        return 2L * (FEATURES * hidden + 3L * hidden) + 4;
+    }
+
+    /** The network named by -Dchess.nnue=path, read once, or null (the hand-written evaluation). */
+    public static Nnue getDefault() {
+        return DefaultHolder.NETWORK;
+    }
+
+    private static final class DefaultHolder {
+        private static final Nnue NETWORK = load();
+
+        private static Nnue load() {
+            String path = System.getProperty("chess.nnue");
+            if (path == null) return null;
+            try {
+                return open(Path.of(path));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public int getHiddenSize() {
+        return hidden;
+    }
+
+    /** Input feature of a piece (Piece.ordinal) on a square, seen from perspective's side. */
+    static int feature(int perspective, int piece, int sq) {
+        return perspective == WHITE ? piece * 64 + sq : (piece + 6) % 12 * 64 + (sq ^ 56);
+    }
+
+    /** Sets an accumulator to the biases, as for an empty board. */
+    void reset(short[] accumulator) {
+        System.arraycopy(featureBiases, 0, accumulator, 0, hidden);
+    }
+
+    /** Adds a piece to both accumulators, indexed [WHITE] and [BLACK]. */
+    void addPiece(short[][] accumulators, int piece, int sq) {
+        add(accumulators[WHITE], feature(WHITE, piece, sq) * hidden);
+        add(accumulators[BLACK], feature(BLACK, piece, sq) * hidden);
+    }
+
+    void removePiece(short[][] accumulators, int piece, int sq) {
+        subtract(accumulators[WHITE], feature(WHITE, piece, sq) * hidden);
+        subtract(accumulators[BLACK], feature(BLACK, piece, sq) * hidden);
+    }
+
+    private void add(short[] accumulator, int column) {
+        KERNELS.add(accumulator, featureWeights, column, hidden);
+    }
+
+    private void subtract(short[] accumulator, int column) {
+        KERNELS.subtract(accumulator, featureWeights, column, hidden);
+    }
+
+    /** Centipawns for the side whose accumulator is us. */
+    int evaluate(short[] us, short[] them) {
+        int sum = KERNELS.dot(us, outputWeights, 0, hidden) + KERNELS.dot(them, outputWeights, hidden, hidden);
+        return (int) ((long) (sum + outputBias) * scale / (QA * QB));
+    }
+
+    /** The loops of the first layer's column updates and of the output, scalar or vectorized. */
+    interface Kernels {
+        void add(short[] accumulator, short[] weights, int column, int length);
+
+        void subtract(short[] accumulator, short[] weights, int column, int length);
+
+        /** Sum of min(max(accumulator[i], 0), QA) * weights[offset + i]. */
+        int dot(short[] accumulator, short[] weights, int offset, int length);
+    }
+
+    private static final class ScalarKernels implements Kernels {
+        @Override
+        public void add(short[] accumulator, short[] weights, int column, int length) {
+            for (int i = 0; i < length; i++) accumulator[i] += weights[column + i];
+        }
+
+        @Override
+        public void subtract(short[] accumulator, short[] weights, int column, int length) {
+            for (int i = 0; i < length; i++) accumulator[i] -= weights[column + i];
+        }
+
+        @Override
+        public int dot(short[] accumulator, short[] weights, int offset, int length) {
+            int sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += Math.min(Math.max(accumulator[i], 0), QA) * weights[offset + i];
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * NnueVector if the Vector API module is present and the class was compiled in, else the
+     * scalar loops. Loaded by name, so this class compiles without the module. The field is
+     * static final, so the JIT sees a single implementation and inlines its calls.
+     */
+    private static Kernels loadKernels() {
+        if (Boolean.getBoolean("chess.nnueScalar")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarKernels();
+        }
+        try {
+            return (Kernels) Class.forName("chess.NnueVector").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernels();
+        }
+    }
+
+    /**
+     * A network whose score is the middlegame piece-square score (PieceSquareTables.MIDDLEGAME)
+     * for the side to move, within +-16 * QA centipawns. Its first 32 neurons all hold that
+     * score, with biases QA apart, so their clipped sum is the score plus a constant; the rest
+     * are zero but cost the same, so hidden sets the size to measure.
+     */
+    public static Nnue pieceSquareNetwork(int hidden) {
+        int used = 32;
+        if (hidden < used) {
+            throw new IllegalArgumentException("Needs at least " + used + " neurons: " + hidden);
+        }
+        int offset = used / 2 * QA;
+        short[] featureWeights = new short[FEATURES * hidden];
+        short[] featureBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        for (int feature = 0; feature < FEATURES; feature++) {
+            int piece = feature / 64;
+            int value = PieceSquareTables.MIDDLEGAME[piece][feature % 64];
+            // Both kings are always on the board, so their material is left out.
+            if (piece == Piece.WHITE_KING.ordinal()) value -= 20_000;
+            if (piece == Piece.BLACK_KING.ordinal()) value += 20_000;
+            for (int i = 0; i < used; i++) {
+                featureWeights[feature * hidden + i] = (short) value;
+            }
+        }
+        for (int i = 0; i < used; i++) {
+            featureBiases[i] = (short) (offset - i * QA);
+            outputWeights[i] = QB;
+        }
+        return new Nnue(hidden, QA, featureWeights, featureBiases, outputWeights, -offset * QB);
+    }
+
+    /** Writes the piece-square network. Usage: java chess.Nnue <nnue.bin> [hiddenSize]   (default 256) */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java chess.Nnue <nnue.bin> [hiddenSize]");
+            System.exit(2);
+        }
+        int hidden = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        Path path = Path.of(args[0]);
+        pieceSquareNetwork(hidden).write(path);
+        System.out.printf("Piece-square network, %d hidden neurons per side, %,d bytes (%s inference)%n",
+                hidden, Files.size(path), VECTORIZED ? "Vector API" : "scalar");
+    }
+}
@@ -0,0 +1,141 @@
+package chess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * OpeningBook.java
+ * A read-only opening book in a compact binary file, memory-mapped rather than loaded onto
+ * the heap. The file is a 16-byte header followed by fixed-width entries sorted by key:
+ *
+ *   header  int magic "CHBK" | int version | long entry count
+ *   entry   long Zobrist key | short move key (see Moves.key) | short weight (unsigned)
+ *
+ * Entries for a position are found by binary search. The keys are Board Zobrist keys, so a
+ * book must be rebuilt (see BookBuilder) if the Zobrist random numbers ever change.
+ * The default book is read from -Dchess.book=path (default book.bin), and is empty if there is
+ * no such file.
+ */
+public final class OpeningBook {
+
+    public static final int MAGIC = 0x4348424B; // "CHBK"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int ENTRY_BYTES = 12;
+
+    private static final OpeningBook EMPTY = new OpeningBook(ByteBuffer.allocate(HEADER_BYTES), 0);
+
+    private final ByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(ByteBuffer entries, int size) {
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /** Maps a book file. The mapping stays valid after the channel is closed. */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            long count = buffer.getLong(8);
+            if (count < 0 || HEADER_BYTES + count * ENTRY_BYTES != buffer.limit()) {
+                throw new IOException("Truncated opening book: " + path);
+            }
+            return new OpeningBook(buffer, (int) count);
+        }
+    }
+
+    public static OpeningBook empty() {
+        return EMPTY;
+    }
+
+    /** The book named by -Dchess.book (default book.bin), opened once, or the empty book. */
+    public static OpeningBook getDefault() {
+        return DefaultHolder.BOOK;
+    }
+
+    private static final class DefaultHolder {
+        private static final OpeningBook BOOK = load();
+
+        private static OpeningBook load() {
+            Path path = Path.of(System.getProperty("chess.book", "book.bin"));
+            if (!Files.isRegularFile(path)) return EMPTY;
+            try {
+                return open(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Picks one of the book moves of the position at random, in proportion to their weights,
+     * and returns it as a packed legal move, or Moves.NONE if the position is not in the book.
+     * Book moves are matched against the legal moves, so a key collision cannot play an illegal move.
+     */
+    public int probe(Board board) {
+        int first = firstIndex(board.getZobristKey());
+        if (first < 0) return Moves.NONE;
+        long key = board.getZobristKey();
+        int end = first;
+        long total = 0;
+        while (end < size && keyAt(end) == key) {
+            total += weightAt(end);
+            end++;
+        }
+        if (total == 0) return Moves.NONE;
+
+        long pick = ThreadLocalRandom.current().nextLong(total);
+        int chosen = first;
+        for (int i = first; i < end; i++) {
+            pick -= weightAt(i);
+            if (pick < 0) {
+                chosen = i;
+                break;
+            }
+        }
+        int moveKey = entries.getShort(HEADER_BYTES + chosen * ENTRY_BYTES + 8) & 0xFFFF;
+        int[] moves = new int[Moves.MAX_MOVES];
+        int count = board.generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (Moves.key(moves[i]) == moveKey) return moves[i];
+        }
+        return Moves.NONE;
+    }
+
+    /** Index of the first entry with this key, or -1. */
+    private int firstIndex(long key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < size && keyAt(low) == key ? low : -1;
+    }
+
+    private long keyAt(int index) {
+        return entries.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    private int weightAt(int index) {
+        return entries.getShort(HEADER_BYTES + index * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+}
@@ -0,0 +1,188 @@
+package chess;
+
+import java.util.Arrays;
+
+import static chess.Bitboards.BLACK;
+import static chess.Bitboards.WHITE;
+
+/**
+ * PawnTable.java
+ * The pawn-structure terms of the evaluation, and a fixed-size cache of them keyed by the
+ * board's pawn-only Zobrist key (see Board.getPawnKey). Pawns rarely move between neighbouring
+ * nodes of a search, so almost every evaluation finds its pawn terms here.
+ * Doubled, isolated and backward pawns are penalised and passed pawns get a bonus that grows
+ * as they advance. For every file a king could stand on, the entry also holds the shelter
+ * of the pawns in front of it (a middlegame term; kings on the d and e files are not scored,
+ * as they can still castle).
+ * Entries live in parallel primitive arrays, one slot per index, replaced on every miss.
+ * A table is not thread-safe, so each search thread uses its own (see local()).
+ */
+public final class PawnTable {
+
+    /** Entries per table (a power of two), configurable with -Dchess.pawnHashEntries=N. */
+    public static final int DEFAULT_ENTRIES = Integer.getInteger("chess.pawnHashEntries", 1 << 14);
+
+    private static final ThreadLocal<PawnTable> LOCAL = ThreadLocal.withInitial(() -> new PawnTable(DEFAULT_ENTRIES));
+
+    // Centipawns, middlegame and endgame, for each extra pawn on a file and each isolated or backward pawn
+    private static final int DOUBLED_MG = -10, DOUBLED_EG = -20;
+    private static final int ISOLATED_MG = -10, ISOLATED_EG = -15;
+    private static final int BACKWARD_MG = -8, BACKWARD_EG = -10;
+    // Passed pawn bonus by rank from its own side (1 = starting rank); the piece-square tables already reward advancing
+    private static final int[] PASSED_MG = {0, 0, 3, 8, 16, 28, 45, 0};
+    private static final int[] PASSED_EG = {0, 5, 10, 18, 32, 55, 85, 0};
+    // Shelter per file in front of a castled king: pawn pushed one square, or gone (or further up)
+    private static final int SHELTER_ADVANCED = -5;
+    private static final int SHELTER_MISSING = -12;
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // AHEAD[color][row]: the rows in front of a pawn of that colour on that row
+    private static final long[][] AHEAD = new long[2][8];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILES[file] = 0x0101010101010101L << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+        }
+        for (int row = 0; row < 8; row++) {
+            // White pawns move towards row 0, Black pawns towards row 7.
+            AHEAD[WHITE][row] = (1L << (row * 8)) - 1;
+            AHEAD[BLACK][row] = row == 7 ? 0 : -1L << ((row + 1) * 8);
+        }
+    }
+
+    private final long[] keys;
+    // Terms from White's point of view
+    private final int[] middlegame;
+    private final int[] endgame;
+    // shelter[slot * 16 + color * 8 + kingFile], from that colour's point of view
+    private final short[] shelter;
+    private final int mask;
+    private long probes;
+    private long hits;
+
+    public PawnTable(int entries) {
+        if (entries <= 0) {
+            throw new IllegalArgumentException("Pawn table size must be positive: " + entries);
+        }
+        int size = Integer.highestOneBit(entries);
+        this.keys = new long[size];
+        this.middlegame = new int[size];
+        this.endgame = new int[size];
+        this.shelter = new short[size * 16];
+        this.mask = size - 1;
+        clear();
+    }
+
+    /** The calling thread's table. */
+    public static PawnTable local() {
+        return LOCAL.get();
+    }
+
+    public void clear() {
+        // Board has no pawns at key 0, so an empty slot must not match it.
+        Arrays.fill(keys, -1L);
+    }
+
+    /**
+     * The slot holding the terms of this pawn structure, computed into it on a miss.
+     * Read it with middlegame, endgame and shelter before the next probe.
+     */
+    public int probe(long pawnKey, long whitePawns, long blackPawns) {
+        int slot = (int) pawnKey & mask;
+        probes++;
+        if (keys[slot] == pawnKey) {
+            hits++;
+            return slot;
+        }
+        keys[slot] = pawnKey;
+        compute(slot, whitePawns, blackPawns);
+        return slot;
+    }
+
+    public int middlegame(int slot) {
+        return middlegame[slot];
+    }
+
+    public int endgame(int slot) {
+        return endgame[slot];
+    }
+
+    /**
+     * Middlegame shelter of a king on kingSquare from its own side's point of view (0 or less).
+     * A king that has left its first two ranks is left to the king's piece-square table.
+     */
+    public int shelter(int slot, int color, int kingSquare) {
+        int rank = color == WHITE ? 7 - (kingSquare >>> 3) : kingSquare >>> 3;
+        return rank <= 1 ? shelter[slot * 16 + color * 8 + (kingSquare & 7)] : 0;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /** Share of probes answered from the table, since it was created. */
+    public double hitRate() {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    private void compute(int slot, long whitePawns, long blackPawns) {
+        int mg = 0, eg = 0;
+        for (int color = WHITE; color <= BLACK; color++) {
+            long own = color == WHITE ? whitePawns : blackPawns;
+            long enemy = color == WHITE ? blackPawns : whitePawns;
+            int sign = color == WHITE ? 1 : -1;
+            for (int file = 0; file < 8; file++) {
+                int count = Long.bitCount(own & FILES[file]);
+                if (count > 1) {
+                    mg += sign * DOUBLED_MG * (count - 1);
+                    eg += sign * DOUBLED_EG * (count - 1);
+                }
+            }
+            for (long remaining = own; remaining != 0; remaining &= remaining - 1) {
+                int sq = Long.numberOfTrailingZeros(remaining);
+                int file = sq & 7;
+                long ahead = AHEAD[color][sq >>> 3];
+                if ((enemy & (FILES[file] | ADJACENT_FILES[file]) & ahead) == 0 && (own & FILES[file] & ahead) == 0) {
+                    int rank = color == WHITE ? 7 - (sq >>> 3) : sq >>> 3;
+                    mg += sign * PASSED_MG[rank];
+                    eg += sign * PASSED_EG[rank];
+                } else if ((own & ADJACENT_FILES[file]) == 0) {
+                    mg += sign * ISOLATED_MG;
+                    eg += sign * ISOLATED_EG;
+                } else if ((own & ADJACENT_FILES[file] & ~ahead) == 0
+                        && (Bitboards.PAWN_ATTACKS[color][sq + (color == WHITE ? -8 : 8)] & enemy) != 0) {
+                    // No neighbour level or behind to support it, and its stop square is guarded by an enemy pawn
+                    mg += sign * BACKWARD_MG;
+                    eg += sign * BACKWARD_EG;
+                }
+            }
+            for (int kingFile = 0; kingFile < 8; kingFile++) {
+                shelter[slot * 16 + color * 8 + kingFile] = (short) shelterOf(own, color, kingFile);
+            }
+        }
+        middlegame[slot] = mg;
+        endgame[slot] = eg;
+    }
+
+    /** Shield of the three files around a king on its first rank, or 0 for a king in the centre. */
+    private static int shelterOf(long own, int color, int kingFile) {
+        if (kingFile == 3 || kingFile == 4) return 0;
+        int secondRow = color == WHITE ? 6 : 1;
+        int thirdRow = color == WHITE ? 5 : 2;
+        int center = Math.max(1, Math.min(6, kingFile));
+        int score = 0;
+        for (int file = center - 1; file <= center + 1; file++) {
+            if ((own & (1L << (secondRow * 8 + file))) != 0) continue;
+            score += (own & (1L << (thirdRow * 8 + file))) != 0 ? SHELTER_ADVANCED : SHELTER_MISSING;
+        }
+        return score;
+    }
+}
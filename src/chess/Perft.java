@@ -0,0 +1,79 @@
+package chess;
+
+/**
+ * Perft.java
+ * Move-generation correctness driver: counts the leaf nodes of the legal move tree to a
+ * fixed depth and compares them with the published totals for the start position and the
+ * standard test positions (Kiwipete and positions 3 to 6 of the Chess Programming Wiki), which
+ * between them cover castling, en passant, promotions, pins and checks.
+ * generateMoves produces only legal moves, so the last ply is counted without playing it.
+ *
+ * Usage: java -cp <classes> chess.Perft [maxDepth]   (default 5)
+ * Exits with status 1 if any depth does not match.
+ */
+public class Perft {
+
+    private record Position(String name, String fen, long[] counts) {
+    }
+
+    /** Known leaf counts, indexed by depth. */
+    private static final Position[] POSITIONS = {
+            new Position("startpos", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                    new long[]{1L, 20L, 400L, 8_902L, 197_281L, 4_865_609L, 119_060_324L}),
+            new Position("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    new long[]{1L, 48L, 2_039L, 97_862L, 4_085_603L, 193_690_690L}),
+            new Position("position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    new long[]{1L, 14L, 191L, 2_812L, 43_238L, 674_624L, 11_030_083L}),
+            new Position("position4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    new long[]{1L, 6L, 264L, 9_467L, 422_333L, 15_833_292L}),
+            new Position("position5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    new long[]{1L, 44L, 1_486L, 62_379L, 2_103_487L, 89_941_194L}),
+            new Position("position6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    new long[]{1L, 46L, 2_079L, 89_890L, 3_894_594L, 164_075_551L}),
+    };
+
+    public static long perft(Board board, int depth) {
+        return perft(board, depth, new int[Math.max(depth, 1)][Moves.MAX_MOVES]);
+    }
+
+    /** buffers[depth - 1] holds the moves generated at that remaining depth. */
+    private static long perft(Board board, int depth, int[][] buffers) {
+        if (depth == 0) return 1L;
+        int[] moves = buffers[depth - 1];
+        int count = board.generateMoves(moves);
+        if (depth == 1) return count;
+        long nodes = 0L;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            nodes += perft(board, depth - 1, buffers);
+            board.unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        if (maxDepth < 1 || maxDepth > 6) {
+            throw new IllegalArgumentException("Depth must be between 1 and 6");
+        }
+        boolean allPassed = true;
+        new Board(); // builds the attack tables before anything is timed
+        for (Position position : POSITIONS) {
+            // Each position is checked as deep as its known counts go.
+            for (int depth = 1; depth <= Math.min(maxDepth, position.counts().length - 1); depth++) {
+                long start = System.nanoTime();
+                long nodes = perft(Board.fromFen(position.fen()), depth);
+                long elapsed = Math.max(1L, System.nanoTime() - start);
+                long expected = position.counts()[depth];
+                boolean passed = nodes == expected;
+                allPassed &= passed;
+                System.out.printf("%s depth %d: %,d nodes (expected %,d) %s  %.1f ms, %,d nodes/s%n",
+                        position.name(), depth, nodes, expected, passed ? "OK" : "MISMATCH",
+                        elapsed / 1e6, nodes * 1_000_000_000L / elapsed);
+            }
+        }
+        if (!allPassed) {
+            System.exit(1);
+        }
+    }
+}
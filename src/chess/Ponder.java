@@ -0,0 +1,137 @@
+package chess;
+
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ponder.java
+ * A search the AI runs on the player's time, for a hosted game (see WebServer): right after
+ * the AI moves, it starts searching its reply to the move it expects from the player.
+ * If the player makes that move (a ponder hit), the running search becomes the AI's move job
+ * and ends within the normal time budget counted from when pondering began, so the answer is
+ * often ready at once. If the player makes any other move, the search is cancelled; what it
+ * found stays in the transposition table and speeds up the search that follows.
+ */
+public class Ponder {
+
+    private final Move expectedMove;
+    private final Board position;
+    private final ChessAI ai;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final CountDownLatch ended = new CountDownLatch(1);
+    private boolean started;
+    private volatile boolean cancelled;
+    private volatile MoveJob job;
+    private Move result;
+    private volatile SearchProgress lastProgress;
+
+    /** position is the game after expectedMove, with the AI to move; ai is the game's ChessAI. */
+    public Ponder(Move expectedMove, Board position, ChessAI ai) {
+        this.expectedMove = expectedMove;
+        this.position = position;
+        this.ai = ai;
+        ai.setPondering(true);
+    }
+
+    public Move getExpectedMove() {
+        return expectedMove;
+    }
+
+    /** The job this search became on a ponder hit, or null. */
+    public MoveJob getJob() {
+        return job;
+    }
+
+    /** True if the player's move is the one this search expects (en passant captures compare equal). */
+    public boolean isExpected(Move move) {
+        return move.startRow() == expectedMove.startRow() && move.startCol() == expectedMove.startCol()
+                && move.endRow() == expectedMove.endRow() && move.endCol() == expectedMove.endCol()
+                && Objects.equals(move.promotion(), expectedMove.promotion());
+    }
+
+    /**
+     * Runs the search on the calling thread; limits apply from its start, except that time is
+     * not counted until a ponder hit. Returns the AI's move if the search was hit before it
+     * ended, for the caller to play, or null if it was cancelled or not (yet) hit, in which
+     * case hit() hands out the move.
+     */
+    public Move run(Game game, SearchLimits limits) {
+        lock.lock();
+        try {
+            if (cancelled) return null;
+            started = true;
+        } finally {
+            lock.unlock();
+        }
+        Move move = null;
+        boolean hitWhileRunning;
+        try {
+            move = game.findAiMove(position, limits, this::progress);
+        } finally {
+            lock.lock();
+            try {
+                result = move;
+                ended.countDown();
+                hitWhileRunning = job != null && !cancelled;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return hitWhileRunning ? move : null;
+    }
+
+    /** False while the search is still queued; a queued search is cancelled rather than hit. */
+    public boolean hasStarted() {
+        lock.lock();
+        try {
+            return started;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A ponder hit: the player made the expected move, and the search is now the AI's reply.
+     * Returns the AI's move if the search has already ended, or null if it is still running, in
+     * which case run() returns the move when it ends.
+     */
+    public Move hit(MoveJob job) {
+        lock.lock();
+        try {
+            this.job = job;
+            ai.setPondering(false);
+            SearchProgress progress = lastProgress;
+            if (progress != null) job.publish(progress);
+            return ended.getCount() == 0 ? result : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The player made another move: stops the search, or keeps it from starting. Does not wait. */
+    public void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            if (!started) ended.countDown();
+        } finally {
+            lock.unlock();
+        }
+        ai.setPondering(false);
+        ai.stop();
+    }
+
+    /** Waits until a cancelled search has returned, so the game's ChessAI is free for the next one. */
+    public void awaitEnd() throws InterruptedException {
+        ended.await();
+    }
+
+    private void progress(SearchProgress progress) {
+        lastProgress = progress;
+        MoveJob current = job;
+        if (current != null) current.publish(progress);
+        // A stop sent while the search was starting up can be missed; repeat it.
+        if (cancelled) ai.stop();
+    }
+}
@@ -0,0 +1,68 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * SearchEvent.java
+ * A Java Flight Recorder event per findBestMove call, so latency spikes in a recording can be
+ * matched with the position and how hard it was to search. Disabled (and nearly free) unless a
+ * recording enables it, e.g. java -XX:StartFlightRecording ... ; it is on in the default settings.
+ */
+@Name("chess.Search")
+@Label("Search")
+@Category({"Chess", "Engine"})
+@Description("One ChessAI.findBestMove call")
+public class SearchEvent extends Event {
+
+    @Label("Position")
+    @Description("FEN of the searched position")
+    String fen;
+
+    @Label("Legal Moves")
+    int legalMoves;
+
+    @Label("Pieces")
+    int pieces;
+
+    @Label("Threads")
+    int threads;
+
+    @Label("Depth")
+    @Description("Deepest completed iteration")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Nodes per Second")
+    long nodesPerSecond;
+
+    @Label("Branching Factor")
+    @Description("Nodes of the last iteration over the one before")
+    double branchingFactor;
+
+    @Label("Cutoff Rate")
+    @Description("Share of full-width nodes that failed high")
+    double cutoffRate;
+
+    @Label("First Move Cutoff Rate")
+    @Description("Share of the cutoffs that came from the first move tried")
+    double firstMoveCutoffRate;
+
+    @Label("Pawn Table Hit Rate")
+    double pawnHitRate;
+
+    @Label("Score")
+    @Description("Centipawns for the side to move")
+    int score;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Pondering")
+    boolean pondering;
+}
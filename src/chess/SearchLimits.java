@@ -0,0 +1,27 @@
+package chess;
+
+/**
+ * SearchLimits.java
+ * A record describing when an iterative-deepening search should stop: a maximum depth,
+ * a time budget in milliseconds and a node budget. A budget of 0 means "no limit".
+ * The search always completes depth 1, so a move is returned even on a tiny budget.
+ */
+public record SearchLimits(
+        int depth,
+        long moveTimeMillis,
+        long nodes
+) {
+    public static final int MAX_DEPTH = 64;
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public static SearchLimits moveTime(long millis) {
+        return new SearchLimits(MAX_DEPTH, millis, 0);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(MAX_DEPTH, 0, nodes);
+    }
+}
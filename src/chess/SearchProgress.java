@@ -0,0 +1,10 @@
+package chess;
+
+/**
+ * SearchProgress.java
+ * A snapshot reported after each completed iteration of a search (see ChessAI.findBestMove).
+ * score is in centipawns from the point of view of the side to move; bestMove is in
+ * coordinate notation, e.g. "e2e4".
+ */
+public record SearchProgress(int depth, int score, long nodes, long elapsedMillis, String bestMove) {
+}
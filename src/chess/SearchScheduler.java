@@ -0,0 +1,164 @@
+package chess;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * SearchScheduler.java
+ * Runs the AI's move searches for all hosted games on a bounded pool, sharing the CPU fairly
+ * between them so a few hard positions cannot hold everyone else's moves up (see WebServer).
+ * Each search gets a time budget when it starts, from the current load: with n searches
+ * queued or running on t threads, a move waits about ceil(n / t) turns, so each turn gets at
+ * most the latency target divided by that, and never more than the target minus the time the
+ * search already waited. The requested move time is the upper limit.
+ * When more searches arrive, the running ones are preempted cooperatively: their deadline is
+ * cut to the new share (see ChessAI.limitTime), and they return the best move of their last
+ * completed depth at the next point they check the clock.
+ * Once searches outnumber the threads, the depth is capped as well, one ply lower for every
+ * doubling of the queue, so easy positions finish early and give their time back.
+ * Only searches submitted here count towards the load. Ponder searches run on their own pool
+ * and are not counted, not even after a ponder hit turns one into the move search: it was
+ * already running, with the ponder budget, when the player moved.
+ */
+public final class SearchScheduler {
+
+    /** Longest a move should take from the request to the answer, configurable with -Dchess.latencyTargetMs=N. */
+    public static final long DEFAULT_LATENCY_TARGET_MS = Long.getLong("chess.latencyTargetMs", 3000);
+    /** Depth cap once searches have to queue, configurable with -Dchess.overloadDepth=N. */
+    public static final int DEFAULT_OVERLOAD_DEPTH = Integer.getInteger("chess.overloadDepth", 8);
+
+    // Shortest budget a search is cut to; depth 1 is always completed anyway
+    private static final long MIN_BUDGET_MS = 20;
+    private static final int MIN_DEPTH = 4;
+
+    private final ExecutorService pool;
+    private final int threads;
+    private final long latencyTargetMillis;
+    private final int overloadDepth;
+    // Searches queued or running
+    private final AtomicInteger load = new AtomicInteger();
+    private final Set<Budget> running = ConcurrentHashMap.newKeySet();
+
+    public SearchScheduler(int threads, long latencyTargetMillis, int overloadDepth) {
+        if (threads < 1 || latencyTargetMillis <= 0 || overloadDepth < 1) {
+            throw new IllegalArgumentException("Need threads, latency target and overload depth above 0");
+        }
+        this.threads = threads;
+        this.latencyTargetMillis = latencyTargetMillis;
+        this.overloadDepth = overloadDepth;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "chess-ai-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The time and depth one search may use. The task calls limits() right before it searches,
+     * which starts the clock on its budget; until then it cannot be preempted.
+     */
+    public final class Budget {
+        private final ChessAI ai;
+        private final long requestedMillis;
+        private final long queuedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long millis;
+
+        private Budget(ChessAI ai, long requestedMillis, long queuedAt) {
+            this.ai = ai;
+            this.requestedMillis = requestedMillis;
+            this.queuedAt = queuedAt;
+        }
+
+        public SearchLimits limits() {
+            int rounds = rounds();
+            long waited = (System.nanoTime() - queuedAt) / 1_000_000;
+            millis = Math.max(MIN_BUDGET_MS, Math.min(requestedMillis,
+                    Math.min(latencyTargetMillis / rounds, latencyTargetMillis - waited)));
+            int depth = SearchLimits.MAX_DEPTH;
+            if (rounds > 1) {
+                // ceil(n / t) of 2 gives the overload depth, 3 to 4 one less, 5 to 8 two less, ...
+                depth = Math.max(MIN_DEPTH, overloadDepth - (31 - Integer.numberOfLeadingZeros(rounds - 1)));
+                Metrics.SCHEDULER_DEPTH_CAPS.increment();
+            }
+            Metrics.SCHEDULER_BUDGET_SECONDS.observe(millis / 1e3);
+            running.add(this);
+            return new SearchLimits(depth, millis, 0);
+        }
+
+        /**
+         * Takes the search out of the load and out of reach of preemption. The task calls it as
+         * soon as the search returns, before it uses ai again (to ponder, say); the pool calls it
+         * once the task ends in any case, and only the first call counts.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                running.remove(this);
+                load.decrementAndGet();
+                Metrics.JOBS_RUNNING.decrement();
+            }
+        }
+
+        /** Cuts the budget to the given share if that is smaller, telling the search. */
+        private void shrinkTo(long share) {
+            if (share < millis) {
+                millis = share;
+                ai.limitTime(share);
+                Metrics.SCHEDULER_PREEMPTIONS.increment();
+            }
+        }
+    }
+
+    /**
+     * Queues a search for ai, wanting requestedMillis. The task runs on a pool thread and should
+     * search with budget.limits(), then budget.release(); it must not use ai for anything else
+     * in between.
+     */
+    public void submit(ChessAI ai, long requestedMillis, Consumer<Budget> task) {
+        Budget budget = new Budget(ai, requestedMillis, System.nanoTime());
+        Metrics.JOBS_RUNNING.increment();
+        load.incrementAndGet();
+        rebalance();
+        pool.execute(() -> {
+            Metrics.JOB_QUEUE_SECONDS.observeSince("", budget.queuedAt);
+            try {
+                task.accept(budget);
+            } finally {
+                budget.release();
+            }
+        });
+    }
+
+    /** True while searches are waiting for a thread, so optional work (pondering) should wait too. */
+    public boolean isOverloaded() {
+        return load.get() > threads;
+    }
+
+    /** Searches queued or running. */
+    public int getLoad() {
+        return load.get();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    private int rounds() {
+        return Math.max(1, (load.get() + threads - 1) / threads);
+    }
+
+    /** Gives the running searches no more than their share under the current load. */
+    private void rebalance() {
+        int rounds = rounds();
+        if (rounds == 1) return;
+        long share = Math.max(MIN_BUDGET_MS, latencyTargetMillis / rounds);
+        for (Budget budget : running) {
+            budget.shrinkTo(share);
+        }
+    }
+}
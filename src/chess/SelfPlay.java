@@ -0,0 +1,311 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * SelfPlay.java
+ * Plays a match between two configurations of ChessAI inside one process, many games at a
+ * time, to tell whether a change makes the engine stronger. A result sequence is fed to an
+ * SPRT (see Sprt), and the match stops as soon as the test decides or the game limit is reached.
+ * Every opening is played twice with colours swapped. Openings come from an EPD/FEN file, or
+ * are made by playing random legal moves from the start and keeping the roughly level ones.
+ * Each worker thread has its own pair of single-threaded engines and each game its own Board;
+ * both sides get the same node or time budget per move. A fixed node budget compares search
+ * quality alone; a fixed time budget counts speed too.
+ * Games end by mate, stalemate, threefold repetition, the fifty-move rule, insufficient
+ * material or a bitbase result (see Bitbases), or are adjudicated: won once both engines have
+ * agreed for a few moves that one side is far ahead, drawn after MAX_PLIES.
+ *
+ * Usage: java -cp <classes> chess.SelfPlay [name=value ...]
+ *   a=, b=          engines: "default", or a comma list of techniques to switch off:
+ *                   -ordering, -quiescence, -null, -lmr, -pvs, -aspiration, -pawns,
+ *                   -nnue (the hand-written evaluation when -Dchess.nnue is set)   (a is the tested engine)
+ *   nodes=N | movetime=MS   per move (default nodes=20000)
+ *   games=N         game limit (default 20000)     threads=N   (default one per core)
+ *   openings=FILE   EPD/FEN lines, else random:  plies=N (default 8), seed=N
+ *   elo0= elo1= alpha= beta=   SPRT (default 0, 5, 0.05, 0.05)   hash=MB per engine (default 8)
+ */
+public class SelfPlay {
+
+    // Games longer than this are drawn
+    private static final int MAX_PLIES = 400;
+    // A side is adjudicated the winner once both engines have scored it this far ahead ...
+    private static final int ADJUDICATE_SCORE = 1000;
+    // ... for this many plies in a row
+    private static final int ADJUDICATE_PLIES = 6;
+    // Random openings further from level than this, by static evaluation, are not used
+    private static final int MAX_OPENING_EVAL = 100;
+
+    /** A named engine configuration. */
+    public record Engine(String name, Consumer<ChessAI> setup) {
+
+        /** "default", or a comma list of techniques to switch off, e.g. "-lmr,-null". */
+        public static Engine parse(String spec) {
+            Consumer<ChessAI> setup = ai -> { };
+            if (!spec.equals("default")) {
+                for (String option : spec.split(",")) {
+                    Consumer<ChessAI> off = switch (option.trim()) {
+                        case "-ordering" -> ai -> ai.setMoveOrdering(false);
+                        case "-quiescence" -> ai -> ai.setQuiescence(false);
+                        case "-null" -> ai -> ai.setNullMovePruning(false);
+                        case "-lmr" -> ai -> ai.setLateMoveReductions(false);
+                        case "-pvs" -> ai -> ai.setPrincipalVariationSearch(false);
+                        case "-aspiration" -> ai -> ai.setAspirationWindows(false);
+                        case "-pawns" -> ai -> ai.setPawnStructure(false);
+                        case "-nnue" -> ai -> ai.setNetwork(null);
+                        default -> throw new IllegalArgumentException("Unknown engine option " + option);
+                    };
+                    setup = setup.andThen(off);
+                }
+            }
+            return new Engine(spec, setup);
+        }
+
+        ChessAI create(int hashMb) {
+            ChessAI ai = new ChessAI(new TranspositionTable(hashMb), 1);
+            setup.accept(ai);
+            return ai;
+        }
+    }
+
+    private final Engine a;
+    private final Engine b;
+    private final SearchLimits limits;
+    // Each worker's engines: [0] is a, [1] is b
+    private final ThreadLocal<ChessAI[]> engines;
+
+    public SelfPlay(Engine a, Engine b, SearchLimits limits, int hashMb) {
+        this.a = a;
+        this.b = b;
+        this.limits = limits;
+        this.engines = ThreadLocal.withInitial(() -> new ChessAI[]{a.create(hashMb), b.create(hashMb)});
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                System.err.println("Expected name=value, got " + arg);
+                System.exit(2);
+            }
+            options.put(option[0], option[1]);
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int maxGames = Integer.parseInt(options.getOrDefault("games", "20000"));
+        SearchLimits limits = options.containsKey("movetime")
+                ? SearchLimits.moveTime(Long.parseLong(options.get("movetime")))
+                : SearchLimits.nodes(Long.parseLong(options.getOrDefault("nodes", "20000")));
+        Sprt sprt = new Sprt(Double.parseDouble(options.getOrDefault("elo0", "0")),
+                Double.parseDouble(options.getOrDefault("elo1", "5")),
+                Double.parseDouble(options.getOrDefault("alpha", "0.05")),
+                Double.parseDouble(options.getOrDefault("beta", "0.05")));
+        Engine a = Engine.parse(options.getOrDefault("a", "default"));
+        Engine b = Engine.parse(options.getOrDefault("b", "default"));
+        int hashMb = Integer.parseInt(options.getOrDefault("hash", "8"));
+
+        List<Board> openings = options.containsKey("openings")
+                ? readOpenings(Path.of(options.get("openings")))
+                : randomOpenings((maxGames + 1) / 2, Integer.parseInt(options.getOrDefault("plies", "8")),
+                Long.parseLong(options.getOrDefault("seed", "1")));
+        if (openings.isEmpty()) {
+            System.err.println("No openings");
+            System.exit(2);
+        }
+        System.out.printf("%s vs %s, %s per move, %,d openings, up to %,d games on %d threads%n",
+                a.name(), b.name(), limits.nodes() > 0 ? limits.nodes() + " nodes" : limits.moveTimeMillis() + " ms",
+                openings.size(), maxGames, threads);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "chess-self-play");
+            thread.setDaemon(true);
+            return thread;
+        });
+        new SelfPlay(a, b, limits, hashMb).run(pool, threads, openings, maxGames, sprt);
+        pool.shutdownNow();
+    }
+
+    /**
+     * Plays up to maxGames games, 2 per opening (cycling through the openings if there are
+     * fewer), on the pool, feeding each result to the SPRT, and prints progress and the result.
+     * Only a few games per thread are queued at a time, so a decided test stops quickly.
+     */
+    public void run(ExecutorService pool, int threads, List<Board> openings, int maxGames, Sprt sprt)
+            throws InterruptedException {
+        ExecutorCompletionService<Integer> results = new ExecutorCompletionService<>(pool);
+        long start = System.nanoTime();
+        int submitted = 0, finished = 0;
+        int window = Math.max(2, threads * 2);
+        long reportEvery = Math.max(10, Math.min(500, maxGames / 20));
+        Sprt.Verdict verdict = Sprt.Verdict.CONTINUE;
+        while (finished < maxGames && verdict == Sprt.Verdict.CONTINUE) {
+            while (submitted < maxGames && submitted - finished < window) {
+                Board opening = openings.get((submitted / 2) % openings.size());
+                boolean aIsWhite = submitted % 2 == 0;
+                results.submit(() -> play(opening, aIsWhite));
+                submitted++;
+            }
+            try {
+                sprt.add(results.take().get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Game failed", e.getCause());
+            }
+            finished++;
+            verdict = sprt.verdict();
+            if (finished % reportEvery == 0) {
+                report(sprt, start, threads);
+            }
+        }
+        if (finished % reportEvery != 0) {
+            report(sprt, start, threads);
+        }
+        System.out.printf("SPRT [%.1f, %.1f]: LLR %.2f (%.2f, %.2f) %s%n", sprt.elo0(), sprt.elo1(),
+                sprt.llr(), sprt.lowerBound(), sprt.upperBound(),
+                switch (verdict) {
+                    case H1 -> "H1 accepted: " + a.name() + " is stronger";
+                    case H0 -> "H0 accepted: " + a.name() + " is not stronger";
+                    case CONTINUE -> "inconclusive after the game limit";
+                });
+    }
+
+    private static void report(Sprt sprt, long start, int threads) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,6d games  +%d =%d -%d  score %.1f%%  Elo %+.1f +/- %.1f  LLR %.2f  %.1f games/s%n",
+                sprt.games(), sprt.wins(), sprt.draws(), sprt.losses(), sprt.score() * 100, sprt.elo(),
+                sprt.eloError(), sprt.llr(), sprt.games() / seconds);
+    }
+
+    /** Plays one game from the opening; returns 1 if a won, 0 for a draw, -1 if b won. */
+    public int play(Board opening, boolean aIsWhite) {
+        ChessAI[] pair = engines.get();
+        ChessAI white = aIsWhite ? pair[0] : pair[1];
+        ChessAI black = aIsWhite ? pair[1] : pair[0];
+        white.getTable().clear();
+        black.getTable().clear();
+        int whiteResult = playGame(new Board(opening), white, black);
+        return aIsWhite ? whiteResult : -whiteResult;
+    }
+
+    /** 1 if white wins, 0 for a draw, -1 if black wins. */
+    private int playGame(Board board, ChessAI white, ChessAI black) {
+        int[] moves = new int[Moves.MAX_MOVES];
+        List<Long> keys = new ArrayList<>();
+        keys.add(board.getZobristKey());
+        SearchProgress[] last = new SearchProgress[1];
+        int agreed = 0, agreedSign = 0;
+        for (int ply = 0; ply < MAX_PLIES; ply++) {
+            boolean whiteToMove = board.isWhiteToMove();
+            int sign = whiteToMove ? 1 : -1;
+            if (board.generateMoves(moves) == 0) {
+                return board.isInCheck(whiteToMove) ? -sign : 0;
+            }
+            if (board.getHalfmoveClock() >= 100 || isRepetition(keys, board.getHalfmoveClock())
+                    || isInsufficientMaterial(board)) {
+                return 0;
+            }
+            if (Long.bitCount(board.getOccupied()) <= 3) {
+                int result = Bitbases.probe(board);
+                if (result != Bitbases.NOT_COVERED) return result * sign;
+            }
+
+            last[0] = null;
+            Move best = (whiteToMove ? white : black).findBestMove(board, limits, progress -> last[0] = progress);
+            int move = board.findLegalMove(best, whiteToMove);
+
+            // Adjudication: both sides must see the same side winning by a wide margin.
+            int score = last[0] == null ? 0 : last[0].score() * sign;
+            int winner = score >= ADJUDICATE_SCORE ? 1 : score <= -ADJUDICATE_SCORE ? -1 : 0;
+            if (winner != 0 && winner == agreedSign) {
+                agreed++;
+            } else {
+                agreed = winner != 0 ? 1 : 0;
+            }
+            agreedSign = winner;
+            if (agreed >= ADJUDICATE_PLIES) return winner;
+
+            board.makeMove(move);
+            keys.add(board.getZobristKey());
+        }
+        return 0;
+    }
+
+    /** True if the position has occurred twice before since the last capture or pawn move. */
+    private static boolean isRepetition(List<Long> keys, int halfmoveClock) {
+        int last = keys.size() - 1;
+        long key = keys.get(last);
+        int seen = 0;
+        for (int i = last - 2; i >= Math.max(0, last - halfmoveClock); i -= 2) {
+            if (keys.get(i) == key && ++seen == 2) return true;
+        }
+        return false;
+    }
+
+    /** Bare kings, or a king and one minor piece against a king. */
+    private static boolean isInsufficientMaterial(Board board) {
+        int pieces = Long.bitCount(board.getOccupied());
+        if (pieces > 3) return false;
+        long minors = board.getBitboard(Piece.WHITE_KNIGHT) | board.getBitboard(Piece.BLACK_KNIGHT)
+                | board.getBitboard(Piece.WHITE_BISHOP) | board.getBitboard(Piece.BLACK_BISHOP);
+        return pieces == 2 || Long.bitCount(minors) == 1;
+    }
+
+    /** Positions from EPD or FEN lines; only the position fields are read. */
+    public static List<Board> readOpenings(Path file) throws IOException {
+        List<Board> openings = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+                String[] fields = trimmed.split("\\s+");
+                if (fields.length < 4) continue;
+                boolean counters = fields.length >= 6 && fields[4].matches("\\d+") && fields[5].matches("\\d+");
+                openings.add(Board.fromFen(String.join(" ", List.of(fields).subList(0, counters ? 6 : 4))));
+            }
+        }
+        return openings;
+    }
+
+    /**
+     * count distinct openings made of plies random legal moves from the start, each roughly
+     * level by static evaluation; the same seed gives the same openings.
+     */
+    public static List<Board> randomOpenings(int count, int plies, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Board> openings = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        int[] moves = new int[Moves.MAX_MOVES];
+        int attempts = 0;
+        while (openings.size() < count && attempts++ < count * 100) {
+            Board board = new Board();
+            boolean ended = false;
+            for (int ply = 0; ply < plies && !ended; ply++) {
+                int n = board.generateMoves(moves);
+                if (n == 0) {
+                    ended = true;
+                } else {
+                    board.makeMove(moves[random.nextInt(n)]);
+                }
+            }
+            if (ended || board.generateMoves(moves) == 0 || Math.abs(board.evaluate()) > MAX_OPENING_EVAL) continue;
+            if (seen.add(board.getZobristKey())) openings.add(board);
+        }
+        return openings;
+    }
+}
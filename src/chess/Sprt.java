@@ -0,0 +1,127 @@
+package chess;
+
+/**
+ * Sprt.java
+ * Sequential probability ratio test over a match's wins, draws and losses, to decide with as
+ * few games as possible whether an engine is stronger than another. H0 says the Elo difference
+ * is elo0, H1 that it is elo1; the test stops as soon as the log-likelihood ratio (LLR) crosses
+ * a bound, with false positive rate alpha and false negative rate beta.
+ * The LLR uses the usual normal approximation of the game results (the trinomial GSPRT, as in
+ * cutechess-cli), with logistic Elo.
+ */
+public final class Sprt {
+
+    public enum Verdict {
+        /** Not enough evidence either way; keep playing. */
+        CONTINUE,
+        /** The difference is elo0 or less: reject the change. */
+        H0,
+        /** The difference is elo1 or more: accept the change. */
+        H1
+    }
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+    private long wins, draws, losses;
+
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("Need elo0 < elo1 and alpha, beta in (0, 1)");
+        }
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /** Adds a game: 1 won, 0 drawn, -1 lost, from the tested engine's side. */
+    public void add(int result) {
+        if (result > 0) wins++;
+        else if (result < 0) losses++;
+        else draws++;
+    }
+
+    public double elo0() {
+        return elo0;
+    }
+
+    public double elo1() {
+        return elo1;
+    }
+
+    public long games() {
+        return wins + draws + losses;
+    }
+
+    public long wins() {
+        return wins;
+    }
+
+    public long draws() {
+        return draws;
+    }
+
+    public long losses() {
+        return losses;
+    }
+
+    /** The tested engine's score, between 0 and 1. */
+    public double score() {
+        long games = games();
+        return games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+    }
+
+    public double llr() {
+        long games = games();
+        if (games == 0) return 0;
+        double score = score();
+        double variance = variance(score);
+        if (variance == 0) return 0;
+        double s0 = expectedScore(elo0), s1 = expectedScore(elo1);
+        return games * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance);
+    }
+
+    public double lowerBound() {
+        return lowerBound;
+    }
+
+    public double upperBound() {
+        return upperBound;
+    }
+
+    public Verdict verdict() {
+        double llr = llr();
+        return llr >= upperBound ? Verdict.H1 : llr <= lowerBound ? Verdict.H0 : Verdict.CONTINUE;
+    }
+
+    /** The Elo difference the score so far implies. */
+    public double elo() {
+        return eloOf(score());
+    }
+
+    /** Half-width of the 95% confidence interval of elo(). */
+    public double eloError() {
+        long games = games();
+        if (games == 0) return Double.POSITIVE_INFINITY;
+        double score = score();
+        double margin = 1.96 * Math.sqrt(variance(score) / games);
+        return (eloOf(Math.min(score + margin, 0.999)) - eloOf(Math.max(score - margin, 0.001))) / 2;
+    }
+
+    /** Variance of one game's result around the mean score. */
+    private double variance(double score) {
+        double w = (double) wins / games(), d = (double) draws / games(), l = (double) losses / games();
+        return w * (1 - score) * (1 - score) + d * (0.5 - score) * (0.5 - score) + l * score * score;
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double eloOf(double score) {
+        double clamped = Math.min(Math.max(score, 0.001), 0.999);
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+}
@@ -0,0 +1,135 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * TranspositionTable.java
+ * Fixed-size hash table of search results, keyed by the board's Zobrist key.
+ * Entries live in two parallel primitive arrays (key and packed data) grouped into
+ * buckets of two slots: the first slot keeps the deepest result of the current search,
+ * the second is always overwritten. The table is kept across searches, so a game's
+ * next move starts from what the previous searches learned.
+ * The table is shared by all search threads without locks: each slot stores key ^ data,
+ * so a slot torn by two concurrent writes fails the key check and reads as a miss.
+ * A table used by one game moves to a new generation at the start of each search. A table
+ * shared by many games (see shared) must not: concurrent searches would move it on all the
+ * time, every entry would look stale, and the depth-preferred slot would always be replaced.
+ * Its owner calls nextGeneration on a timer instead.
+ */
+public class TranspositionTable {
+
+    public static final int DEFAULT_SIZE_MB = 4;
+
+    // Bound types. 0 is reserved so that an empty slot has all-zero data.
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int BYTES_PER_ENTRY = 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    // Written by one thread at a time (the searching game, or the owner's timer), read by all
+    private volatile int age;
+    private final boolean shared;
+
+    public TranspositionTable() {
+        this(DEFAULT_SIZE_MB);
+    }
+
+    public TranspositionTable(int sizeMb) {
+        this(sizeMb, false);
+    }
+
+    private TranspositionTable(int sizeMb, boolean shared) {
+        if (sizeMb <= 0) {
+            throw new IllegalArgumentException("Transposition table size must be positive: " + sizeMb);
+        }
+        // Round down to a power-of-two number of buckets so the index is a mask.
+        long entries = (long) sizeMb * 1024 * 1024 / BYTES_PER_ENTRY;
+        int buckets = Integer.highestOneBit((int) Math.min(entries / 2, 1 << 29));
+        this.keys = new long[buckets * 2];
+        this.data = new long[buckets * 2];
+        this.bucketMask = buckets - 1;
+        this.shared = shared;
+    }
+
+    /** A table for the searches of many games at once, aged by its owner with nextGeneration. */
+    public static TranspositionTable shared(int sizeMb) {
+        return new TranspositionTable(sizeMb, true);
+    }
+
+    /** Marks the start of a new search, so results from earlier searches can be replaced first. Ignored by a shared table. */
+    public void newSearch() {
+        if (!shared) nextGeneration();
+    }
+
+    /** Makes every entry stored so far count as old, so it is replaced before the new ones. */
+    public synchronized void nextGeneration() {
+        age = (age + 1) & 0x3F;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        age = 0;
+    }
+
+    /** Returns the packed entry for the key, or 0 if the position is not in the table. */
+    public long probe(long key) {
+        int slot = (int) (key & bucketMask) << 1;
+        long entry = data[slot];
+        if (entry != 0L && (keys[slot] ^ entry) == key) return entry;
+        entry = data[slot + 1];
+        if (entry != 0L && (keys[slot + 1] ^ entry) == key) return entry;
+        return 0L;
+    }
+
+    public void store(long key, int depth, int bound, int score, int move) {
+        int slot = (int) (key & bucketMask) << 1;
+        int currentAge = age;
+        long entry = pack(depth, bound, score, move, currentAge);
+        long existing = data[slot];
+        if (existing == 0L || (keys[slot] ^ existing) == key || depth >= depth(existing) || age(existing) != currentAge) {
+            keys[slot] = key ^ entry;
+            data[slot] = entry;
+        } else {
+            keys[slot + 1] = key ^ entry;
+            data[slot + 1] = entry;
+        }
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    // Layout: score (32 bits) | move (16) | depth (8) | bound (2) | age (6)
+    private static long pack(int depth, int bound, int score, int move, int age) {
+        return (score & 0xFFFFFFFFL)
+                | ((long) (move & 0xFFFF) << 32)
+                | ((long) (depth & 0xFF) << 48)
+                | ((long) bound << 56)
+                | ((long) age << 58);
+    }
+
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry >>> 32) & 0xFFFF;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 48) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 56) & 0x3;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> 58) & 0x3F;
+    }
+}
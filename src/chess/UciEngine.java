@@ -0,0 +1,280 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * UciEngine.java
+ * The engine over the Universal Chess Interface on stdin/stdout, for tournament tools and GUIs,
+ * without the web server. One Board and one ChessAI (with its transposition table and move
+ * ordering tables) are kept for the whole session: a "position" command that extends the last
+ * one only plays the new moves.
+ * Searches run on a separate thread, so "stop", "isready" and "ponderhit" are answered while
+ * the engine thinks. "go ponder" searches without a clock until "ponderhit", from which the
+ * move's time budget runs in full (see ChessAI.ponderHit).
+ *
+ * Supported: uci, debug, isready, setoption (Hash, Threads), ucinewgame, position, go (depth,
+ * movetime, nodes, wtime, btime, winc, binc, movestogo, infinite, ponder), stop, ponderhit, quit.
+ *
+ * Usage: java -cp <classes> chess.UciEngine
+ */
+public class UciEngine {
+
+    private static final String NAME = "ChessBOT";
+    // Kept back from each move's time share for I/O and the GUI's own latency
+    private static final long MOVE_OVERHEAD_MS = 20;
+    // Moves left in the game when the GUI does not say (movestogo)
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+
+    private final PrintStream out;
+    private int hashMb = GameRegistry.DEFAULT_HASH_MB;
+    private int threads = ChessAI.DEFAULT_THREADS;
+    private ChessAI ai = new ChessAI(new TranspositionTable(hashMb), threads);
+    private Board board = new Board();
+    // The last position command, so the next one can be checked for being an extension of it; null if it failed
+    private String positionBase = "startpos";
+    private List<String> positionMoves = new ArrayList<>();
+
+    private Thread searchThread;
+    // Counted down by stop or ponderhit; an infinite or pondering search may not answer before it
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    public UciEngine(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.UTF_8);
+        UciEngine engine = new UciEngine(out);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!engine.handle(line.trim())) break;
+        }
+        engine.stopSearch();
+    }
+
+    /** Handles one command; returns false on quit. */
+    public boolean handle(String line) {
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "uci" -> {
+                send("id name " + NAME);
+                send("id author srivastava491");
+                send("option name Hash type spin default " + GameRegistry.DEFAULT_HASH_MB + " min 1 max 4096");
+                send("option name Threads type spin default " + ChessAI.DEFAULT_THREADS + " min 1 max 256");
+                send("option name Ponder type check default false");
+                send("uciok");
+            }
+            case "isready" -> {
+                // Builds the endgame bitbases now rather than inside a timed search.
+                Bitbases.generationMillis();
+                send("readyok");
+            }
+            case "setoption" -> setOption(tokens);
+            case "ucinewgame" -> {
+                stopSearch();
+                ai.getTable().clear();
+            }
+            case "position" -> {
+                stopSearch();
+                position(tokens);
+            }
+            case "go" -> {
+                stopSearch();
+                go(tokens);
+            }
+            case "stop" -> stopSearch();
+            case "ponderhit" -> {
+                ai.ponderHit();
+                release.countDown();
+            }
+            case "quit" -> {
+                return false;
+            }
+            default -> {
+                // "debug" and unknown commands are ignored, as the protocol asks.
+            }
+        }
+        return true;
+    }
+
+    private void setOption(String[] tokens) {
+        // setoption name <id> value <x>
+        int nameAt = Arrays.asList(tokens).indexOf("name");
+        int valueAt = Arrays.asList(tokens).indexOf("value");
+        if (nameAt < 0 || valueAt < nameAt || valueAt + 1 >= tokens.length) return;
+        String name = String.join(" ", Arrays.copyOfRange(tokens, nameAt + 1, valueAt));
+        try {
+            int value = Integer.parseInt(tokens[valueAt + 1]);
+            if (name.equalsIgnoreCase("Hash") && value >= 1) {
+                hashMb = value;
+            } else if (name.equalsIgnoreCase("Threads") && value >= 1) {
+                threads = value;
+            } else {
+                return;
+            }
+        } catch (NumberFormatException e) {
+            return;
+        }
+        stopSearch();
+        ai = new ChessAI(new TranspositionTable(hashMb), threads);
+    }
+
+    /** position [startpos | fen <fen>] [moves <m1> <m2> ...] */
+    private void position(String[] tokens) {
+        int movesAt = Arrays.asList(tokens).indexOf("moves");
+        int end = movesAt < 0 ? tokens.length : movesAt;
+        String base;
+        if (tokens.length > 1 && tokens[1].equals("fen")) {
+            base = String.join(" ", Arrays.copyOfRange(tokens, 2, end));
+        } else {
+            base = "startpos";
+        }
+        List<String> moves = movesAt < 0 ? List.of() : Arrays.asList(tokens).subList(movesAt + 1, tokens.length);
+
+        // Usually the new position is the last one plus the moves played since.
+        boolean continues = base.equals(positionBase) && moves.size() >= positionMoves.size()
+                && moves.subList(0, positionMoves.size()).equals(positionMoves);
+        List<String> toPlay = moves;
+        if (continues) {
+            toPlay = moves.subList(positionMoves.size(), moves.size());
+        } else {
+            try {
+                board = base.equals("startpos") ? new Board() : Board.fromFen(base);
+            } catch (IllegalArgumentException e) {
+                send("info string " + e.getMessage());
+                positionBase = null;
+                return;
+            }
+        }
+        for (String move : toPlay) {
+            int legal = findMove(move);
+            if (legal == Moves.NONE) {
+                send("info string Illegal move " + move);
+                // The board stops short of the moves, so the next position is set up from scratch.
+                positionBase = null;
+                return;
+            }
+            board.makeMove(legal);
+        }
+        positionBase = base;
+        positionMoves = new ArrayList<>(moves);
+    }
+
+    private int findMove(String coordinates) {
+        int[] moves = new int[Moves.MAX_MOVES];
+        int count = board.generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (Moves.toString(moves[i]).equals(coordinates)) return moves[i];
+        }
+        return Moves.NONE;
+    }
+
+    private void go(String[] tokens) {
+        int depth = SearchLimits.MAX_DEPTH;
+        long moveTime = 0, nodes = 0, time = -1, increment = 0;
+        int movesToGo = DEFAULT_MOVES_TO_GO;
+        boolean infinite = false, ponder = false;
+        boolean white = board.isWhiteToMove();
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "depth" -> depth = Math.max(1, Math.min(Integer.parseInt(tokens[++i]), SearchLimits.MAX_DEPTH));
+                    case "movetime" -> moveTime = Math.max(1, Long.parseLong(tokens[++i]));
+                    case "nodes" -> nodes = Math.max(1, Long.parseLong(tokens[++i]));
+                    case "wtime", "btime" -> {
+                        long value = Long.parseLong(tokens[++i]);
+                        if (tokens[i - 1].equals(white ? "wtime" : "btime")) time = value;
+                    }
+                    case "winc", "binc" -> {
+                        long value = Long.parseLong(tokens[++i]);
+                        if (tokens[i - 1].equals(white ? "winc" : "binc")) increment = value;
+                    }
+                    case "movestogo" -> movesToGo = Math.max(1, Integer.parseInt(tokens[++i]));
+                    case "infinite" -> infinite = true;
+                    case "ponder" -> ponder = true;
+                    default -> {
+                        // searchmoves and mate are not supported
+                    }
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            send("info string Invalid go command");
+            return;
+        }
+        if (moveTime == 0 && time >= 0 && !infinite) {
+            long share = Math.min(time / movesToGo + increment * 3 / 4, time / 2);
+            moveTime = Math.max(1, share - MOVE_OVERHEAD_MS);
+        }
+        SearchLimits limits = new SearchLimits(depth, infinite ? 0 : moveTime, nodes);
+
+        boolean holdResult = infinite || ponder;
+        release = new CountDownLatch(holdResult ? 1 : 0);
+        ai.setPondering(ponder);
+        Board position = board;
+        ChessAI searcher = ai;
+        searchThread = new Thread(() -> search(searcher, position, limits), "chess-uci-search");
+        searchThread.start();
+    }
+
+    private void search(ChessAI searcher, Board position, SearchLimits limits) {
+        Move best = searcher.findBestMove(position, limits, this::info);
+        // The protocol forbids answering an infinite or pondering search before stop or ponderhit.
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (best == null) {
+            send("bestmove 0000");
+            return;
+        }
+        int move = position.findLegalMove(best, position.isWhiteToMove());
+        String answer = "bestmove " + Moves.toString(move);
+        position.makeMove(move);
+        int reply = searcher.getHashMove(position);
+        position.unmakeMove(move);
+        send(reply == Moves.NONE ? answer : answer + " ponder " + Moves.toString(reply));
+    }
+
+    private void info(SearchProgress progress) {
+        int mate = ChessAI.mateInMoves(progress.score());
+        String score = mate != 0 ? "mate " + mate : "cp " + ChessAI.centipawns(progress.score());
+        long nps = progress.nodes() * 1000 / Math.max(1, progress.elapsedMillis());
+        send("info depth " + progress.depth() + " score " + score + " nodes " + progress.nodes()
+                + " nps " + nps + " time " + progress.elapsedMillis() + " pv " + progress.bestMove());
+    }
+
+    /** Stops a running search, lets it print its bestmove, and waits for it. */
+    private void stopSearch() {
+        Thread thread = searchThread;
+        if (thread == null) return;
+        ai.setPondering(false);
+        release.countDown();
+        try {
+            // A stop sent before the search has set itself up is missed, so it is repeated.
+            do {
+                ai.stop();
+                thread.join(10);
+            } while (thread.isAlive());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+    private synchronized void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+}
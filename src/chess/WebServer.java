@@ -5,30 +5,87 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import com.google.gson.Gson;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * WebServer.java
  * This is the main class to run. It starts a simple HTTP server to allow a web
  * frontend to interact with the chess engine.
  * This version includes a fix for CORS preflight requests.
+ * Many games are hosted at once: /new-game returns a game id in the X-Game-Id header, and
+ * /move and /get-board take it as ?game=<id> (see GameRegistry). Requests run on virtual
+ * threads.
+ * /move plays the player's move and returns at once; the AI's reply is searched as a MoveJob
+ * by a SearchScheduler, which shares a pool of one thread per CPU core between the games and
+ * sizes each search's budget so a move is answered within -Dchess.latencyTargetMs even under
+ * load. Its id comes back in the X-Job-Id header, and
+ * /move-events?game=<id>&job=<id> streams the search's progress as Server-Sent Events,
+ * ending with the AI's move and the new board.
+ * After each AI move the game ponders (see Ponder): it searches its reply to the player's
+ * expected move on a separate pool. On a ponder hit, /move answers from that search, often
+ * with the job already done; any other move cancels it. No game ponders while move searches
+ * are queueing.
+ * POST /analyze takes a body of EPD or FEN lines and streams one JSON result per position
+ * (see BatchAnalyzer), analyzed in parallel on a pool with a quarter of the cores. Each position is
+ * searched for at most ?movetime=<ms> (default and cap as for /move), to ?depth=N if given.
+ * /get-board answers from a BoardResponse encoded once per move and cached in the session,
+ * with an ETag so unchanged polls get 304 Not Modified. ?format=fen returns the position as
+ * FEN, and ?format=delta&since=<version> only the moves played since that version; the
+ * X-Board-Version header of every board response says which version it is.
+ * GET /metrics serves the counters and histograms of Metrics in the Prometheus text format:
+ * searches, nodes, cutoffs and branching factor, and per-handler request counts and latency
+ * (for the streaming endpoints, the length of the stream).
  */
 public class WebServer {
 
-    private static Game game;
+    private static final GameRegistry games = new GameRegistry();
+    // Each search may use ChessAI.DEFAULT_THREADS threads, so the pool has cores / that many.
+    private static final SearchScheduler scheduler = new SearchScheduler(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / ChessAI.DEFAULT_THREADS),
+            SearchScheduler.DEFAULT_LATENCY_TARGET_MS, SearchScheduler.DEFAULT_OVERLOAD_DEPTH);
+    // Pondering searches get half the cores, so they cannot starve the move jobs.
+    private static final ExecutorService ponderPool = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+                Thread thread = new Thread(r, "chess-ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+    // Batch analysis gets a quarter, however many positions are posted, so the move jobs keep most of the machine.
+    private static final int ANALYSIS_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    private static final ExecutorService analysisPool = BatchAnalyzer.newPool(ANALYSIS_THREADS);
+    // Node cap of a ponder search, so a player who walks away does not keep a core busy for long
+    private static final long PONDER_MAX_NODES = 50_000_000;
+    // How often an idle event stream sends a comment, so dead connections are noticed
+    private static final long EVENT_KEEP_ALIVE_MS = 15_000;
     private static final Gson gson = new Gson();
-    private static final int AI_SEARCH_DEPTH = 6;
+    // Default and maximum time the AI may think per move; a request can ask for less with ?movetime=<ms>
+    private static final long AI_MOVE_TIME_MS = 1000;
+    private static final long AI_MAX_MOVE_TIME_MS = 10_000;
 
     public static void main(String[] args) throws IOException {
         HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
-        server.createContext("/new-game", new NewGameHandler());
-        server.createContext("/move", new MoveHandler());
-        server.createContext("/get-board", new GetBoardHandler());
-        server.setExecutor(null);
+        server.createContext("/new-game", instrument("/new-game", new NewGameHandler()));
+        server.createContext("/move", instrument("/move", new MoveHandler()));
+        server.createContext("/get-board", instrument("/get-board", new GetBoardHandler()));
+        server.createContext("/move-events", instrument("/move-events", new MoveEventsHandler()));
+        server.createContext("/analyze", instrument("/analyze", new AnalyzeHandler()));
+        server.createContext("/metrics", new MetricsHandler());
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        Metrics.GAMES.track(games::size);
+        games.startEviction();
+        System.out.println(Bitbases.describe());
         System.out.println("Starting server on port 8080...");
         server.start();
     }
@@ -36,21 +93,67 @@ public class WebServer {
     // --- NEW: Helper method to handle CORS preflight requests ---
     private static void handleOptionsRequest(HttpExchange exchange) throws IOException {
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, OPTIONS");
-        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type,X-Game-Over");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type,X-Game-Over,If-None-Match");
         exchange.sendResponseHeaders(204, -1); // 204 No Content
     }
 
     private static void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
+        sendResponse(exchange, statusCode, response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Sends an already encoded JSON body; a 304 is sent without one. */
+    private static void sendResponse(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().set("Access-Control-Expose-Headers", "X-Game-Over");
+        exchange.getResponseHeaders().set("Access-Control-Expose-Headers",
+                "X-Game-Over, X-Game-Id, X-Job-Id, X-Ponder-Hit, X-Board-Version, ETag");
+        if (statusCode == 304) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
         exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(statusCode, response.getBytes().length);
+        exchange.sendResponseHeaders(statusCode, body.length);
         try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes());
+            os.write(body);
         }
     }
 
+    /** The board's JSON array and FEN for the game's current version; called with the game's lock held. */
+    private static BoardResponse encodeBoard(Game game) {
+        Board board = game.getBoard();
+        Map<String, Object> fen = new LinkedHashMap<>();
+        fen.put("version", game.getVersion());
+        fen.put("fen", board.toFen());
+        return new BoardResponse(game.getVersion(),
+                gson.toJson(getBoardState(board)).getBytes(StandardCharsets.UTF_8),
+                gson.toJson(fen).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Sends the session's board as the JSON array, with its version. */
+    private static void sendBoard(HttpExchange exchange, int statusCode, BoardResponse board) throws IOException {
+        exchange.getResponseHeaders().set("X-Board-Version", String.valueOf(board.version()));
+        sendResponse(exchange, statusCode, board.json());
+    }
+
+    /** Counts and times a handler's requests for /metrics, by path and status code. */
+    private static HttpHandler instrument(String path, HttpHandler handler) {
+        String handlerLabel = Metrics.label("handler", path);
+        return exchange -> {
+            long start = System.nanoTime();
+            Metrics.HTTP_IN_FLIGHT.increment();
+            try {
+                handler.handle(exchange);
+            } finally {
+                Metrics.HTTP_IN_FLIGHT.decrement();
+                Metrics.HTTP_SECONDS.observeSince(handlerLabel, start);
+                // -1 if the handler failed before sending a status
+                Metrics.HTTP_REQUESTS.add(handlerLabel + "," + Metrics.label("code",
+                        String.valueOf(exchange.getResponseCode())), 1);
+            }
+        };
+    }
+
     // --- Handlers updated to check for OPTIONS method ---
 
     static class NewGameHandler implements HttpHandler {
@@ -59,9 +162,9 @@ public class WebServer {
             if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
                 handleOptionsRequest(exchange);
             } else {
-                game = new Game();
-                String jsonBoard = gson.toJson(getBoardState(game.getBoard()));
-                sendResponse(exchange, 200, jsonBoard);
+                GameRegistry.Session session = games.create();
+                exchange.getResponseHeaders().set("X-Game-Id", session.getId());
+                sendBoard(exchange, 200, session.getBoardResponse(WebServer::encodeBoard));
             }
         }
     }
@@ -72,13 +175,58 @@ public class WebServer {
             if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
                 handleOptionsRequest(exchange);
             } else {
-                if (game == null) {
-                    sendResponse(exchange, 404, "{\"error\":\"Game not started\"}");
+                Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
+                GameRegistry.Session session = games.get(params.get("game"));
+                if (session == null) {
+                    sendResponse(exchange, 404, "{\"error\":\"Game not found\"}");
                     return;
                 }
-                String jsonBoard = gson.toJson(getBoardState(game.getBoard()));
-                sendResponse(exchange, 200, jsonBoard);
+                String format = params.getOrDefault("format", "json");
+                switch (format) {
+                    case "json", "fen" -> {
+                        BoardResponse board = session.getBoardResponse(WebServer::encodeBoard);
+                        exchange.getResponseHeaders().set("ETag", board.etag(format));
+                        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                        exchange.getResponseHeaders().set("X-Board-Version", String.valueOf(board.version()));
+                        if (board.matches(exchange.getRequestHeaders().getFirst("If-None-Match"), format)) {
+                            sendResponse(exchange, 304, new byte[0]);
+                        } else {
+                            sendResponse(exchange, 200, format.equals("fen") ? board.fen() : board.json());
+                        }
+                    }
+                    case "delta" -> sendDelta(exchange, session, params.get("since"));
+                    default -> sendResponse(exchange, 400, "{\"error\":\"Unknown format\"}");
+                }
+            }
+        }
+
+        /** The moves played since the client's version: {"version":N,"moves":["e2e4",...]}. */
+        private static void sendDelta(HttpExchange exchange, GameRegistry.Session session, String since)
+                throws IOException {
+            int from;
+            try {
+                from = Integer.parseInt(since == null ? "" : since);
+            } catch (NumberFormatException e) {
+                from = -1;
+            }
+            Game game = session.getGame();
+            Map<String, Object> delta = new LinkedHashMap<>();
+            // Only checked and read under the lock; the response is written after it is released.
+            session.getLock().lock();
+            try {
+                if (from >= 0 && from <= game.getVersion()) {
+                    delta.put("version", game.getVersion());
+                    delta.put("moves", game.movesSince(from));
+                }
+            } finally {
+                session.getLock().unlock();
+            }
+            if (delta.isEmpty()) {
+                sendResponse(exchange, 400, "{\"error\":\"Invalid since version\"}");
+                return;
             }
+            exchange.getResponseHeaders().set("X-Board-Version", String.valueOf(delta.get("version")));
+            sendResponse(exchange, 200, gson.toJson(delta));
         }
     }
 
@@ -88,40 +236,307 @@ public class WebServer {
             if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
                 handleOptionsRequest(exchange);
             } else {
-                if (game == null) {
-                    sendResponse(exchange, 400, "{\"error\":\"Game not started\"}");
+                Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
+                GameRegistry.Session session = games.get(params.get("game"));
+                if (session == null) {
+                    sendResponse(exchange, 404, "{\"error\":\"Game not found\"}");
                     return;
                 }
-
-                Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
                 String from = params.get("from");
                 String to = params.get("to");
+                long moveTime = AI_MOVE_TIME_MS;
+                if (params.containsKey("movetime")) {
+                    try {
+                        moveTime = Long.parseLong(params.get("movetime"));
+                    } catch (NumberFormatException e) {
+                        moveTime = -1;
+                    }
+                    if (moveTime <= 0 || moveTime > AI_MAX_MOVE_TIME_MS) {
+                        sendResponse(exchange, 400, "{\"error\":\"Invalid movetime\"}");
+                        return;
+                    }
+                }
+
+                session.getLock().lock();
+                try {
+                    playMove(exchange, session, from + to, moveTime);
+                } finally {
+                    session.getLock().unlock();
+                }
+            }
+        }
 
-                Move playerMove = game.parseMove(from + to);
+        /**
+         * Plays the player's move and, unless that ends the game, starts the AI's reply as a job.
+         * Called with the game's lock held.
+         */
+        private static void playMove(HttpExchange exchange, GameRegistry.Session session, String moveStr, long moveTime)
+                throws IOException {
+            Game game = session.getGame();
+            MoveJob running = session.getJob();
+            if (running != null && !running.isDone()) {
+                sendResponse(exchange, 409, "{\"error\":\"AI is still thinking\"}");
+                return;
+            }
+            Move playerMove = game.parseMove(moveStr);
 
-                if (playerMove != null && game.getBoard().isMoveLegal(playerMove, true)) {
-                    game.getBoard().makeMove(playerMove);
+            if (playerMove != null && game.getBoard().isMoveLegal(playerMove, true)) {
+                game.playMove(playerMove);
+                Ponder ponder = session.getPonder();
+                session.setPonder(null);
 
-                    if (game.getBoard().isGameOver()) {
-                        exchange.getResponseHeaders().set("X-Game-Over", "You Win!");
-                    } else {
-                        Move aiMove = game.getAi().findBestMove(game.getBoard(), AI_SEARCH_DEPTH);
-                        if (aiMove != null) {
-                            game.getBoard().makeMove(aiMove);
-                            if (game.getBoard().isGameOver()) {
-                                exchange.getResponseHeaders().set("X-Game-Over", "AI Wins!");
-                            }
-                        } else {
-                            exchange.getResponseHeaders().set("X-Game-Over", "Stalemate!");
+                if (game.getBoard().isCheckmate()) {
+                    exchange.getResponseHeaders().set("X-Game-Over", "You Win!");
+                } else if (game.getBoard().isStalemate()) {
+                    exchange.getResponseHeaders().set("X-Game-Over", "Stalemate!");
+                } else {
+                    MoveJob job = new MoveJob(UUID.randomUUID().toString());
+                    session.setJob(job);
+                    // The board after the player's move, even if a ponder hit plays the AI's reply at once
+                    BoardResponse board = session.getBoardResponse(WebServer::encodeBoard);
+                    if (ponder != null && ponder.isExpected(playerMove) && ponder.hasStarted()) {
+                        exchange.getResponseHeaders().set("X-Ponder-Hit", "true");
+                        Move ready = ponder.hit(job);
+                        if (ready != null) {
+                            completeJob(session, job, ready, moveTime);
                         }
+                    } else {
+                        if (ponder != null) ponder.cancel();
+                        scheduler.submit(game.getAi(), moveTime, budget -> runJob(session, job, budget, moveTime, ponder));
                     }
+                    exchange.getResponseHeaders().set("X-Job-Id", job.getId());
+                    sendBoard(exchange, 202, board);
+                    return;
+                }
+                if (ponder != null) ponder.cancel();
+
+                sendBoard(exchange, 200, session.getBoardResponse(WebServer::encodeBoard));
+
+            } else {
+                sendResponse(exchange, 400, "{\"error\":\"Invalid move\"}");
+            }
+        }
 
-                    String jsonBoard = gson.toJson(getBoardState(game.getBoard()));
-                    sendResponse(exchange, 200, jsonBoard);
+        /**
+         * Searches a copy of the board, so the game stays readable (and its lock free) meanwhile.
+         * No other move can be played until the job is done, so the copy cannot go stale.
+         * A cancelled ponder search is waited for first, as it uses the game's ChessAI.
+         */
+        private static void runJob(GameRegistry.Session session, MoveJob job, SearchScheduler.Budget budget,
+                                   long moveTime, Ponder cancelled) {
+            Game game = session.getGame();
+            try {
+                if (cancelled != null) {
+                    cancelled.awaitEnd();
+                }
+                Board position;
+                session.getLock().lock();
+                try {
+                    position = new Board(game.getBoard());
+                } finally {
+                    session.getLock().unlock();
+                }
+                Move aiMove = game.findAiMove(position, budget.limits(), job::publish);
+                // Before completeJob may ponder on the same ChessAI, which a rebalance must not cut short
+                budget.release();
+                completeJob(session, job, aiMove, moveTime);
+            } catch (InterruptedException e) {
+                job.fail("Search interrupted");
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                job.fail("Search failed");
+                throw e;
+            }
+        }
 
+        /** Plays the AI's move, finishes the job and, unless the game is over, starts pondering. */
+        private static void completeJob(GameRegistry.Session session, MoveJob job, Move aiMove, long moveTime) {
+            Game game = session.getGame();
+            String gameOver = null;
+            session.getLock().lock();
+            try {
+                game.playMove(aiMove);
+                if (game.getBoard().isCheckmate()) {
+                    gameOver = "AI Wins!";
+                } else if (game.getBoard().isStalemate()) {
+                    gameOver = "Stalemate!";
                 } else {
-                    sendResponse(exchange, 400, "{\"error\":\"Invalid move\"}");
+                    startPondering(session, moveTime);
                 }
+            } finally {
+                session.getLock().unlock();
+            }
+            job.finish(aiMove, gameOver);
+        }
+
+        /**
+         * Starts searching the position after the player's expected reply, with the same time
+         * budget as the move just played. Called with the game's lock held.
+         */
+        private static void startPondering(GameRegistry.Session session, long moveTime) {
+            Game game = session.getGame();
+            if (scheduler.isOverloaded()) return;
+            Move expected = game.expectedReply();
+            if (expected == null) return;
+            Board position = new Board(game.getBoard());
+            position.makeMove(expected);
+            if (position.isGameOver()) return;
+            Ponder ponder = new Ponder(expected, position, game.getAi());
+            session.setPonder(ponder);
+            SearchLimits limits = new SearchLimits(SearchLimits.MAX_DEPTH, moveTime, PONDER_MAX_NODES);
+            ponderPool.execute(() -> {
+                try {
+                    Move aiMove = ponder.run(game, limits);
+                    if (aiMove != null) {
+                        completeJob(session, ponder.getJob(), aiMove, moveTime);
+                    }
+                } catch (RuntimeException e) {
+                    MoveJob job = ponder.getJob();
+                    if (job != null) job.fail("Search failed");
+                    throw e;
+                }
+            });
+        }
+    }
+
+    /** The final event of a move job. gameOver is null while the game goes on. */
+    private record JobResult(String aiMove, String gameOver, String[][] board) {
+    }
+
+    /**
+     * Streams a move job as Server-Sent Events: a "progress" event per completed search depth
+     * (depth, score, nodes, elapsedMillis, bestMove), then one "done" event with the AI's move,
+     * the game-over text if any and the board, or an "error" event. Only the latest progress is
+     * sent, so a slow client skips depths. A stream opened after the job ended gets "done" at once.
+     */
+    static class MoveEventsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptionsRequest(exchange);
+                return;
+            }
+            Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
+            GameRegistry.Session session = games.get(params.get("game"));
+            MoveJob job = session == null ? null : session.getJob();
+            if (job == null || !job.getId().equals(params.get("job"))) {
+                sendResponse(exchange, 404, "{\"error\":\"Job not found\"}");
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                long seen = 0;
+                while (true) {
+                    MoveJob.Snapshot snapshot = job.awaitChange(seen, EVENT_KEEP_ALIVE_MS);
+                    if (snapshot.done()) {
+                        if (snapshot.error() != null) {
+                            sendEvent(os, "error", "{\"error\":\"" + snapshot.error() + "\"}");
+                        } else {
+                            String[][] board;
+                            session.getLock().lock();
+                            try {
+                                board = getBoardState(session.getGame().getBoard());
+                            } finally {
+                                session.getLock().unlock();
+                            }
+                            JobResult result = new JobResult(snapshot.aiMove().toCoordinates(), snapshot.gameOver(), board);
+                            sendEvent(os, "done", gson.toJson(result));
+                        }
+                        return;
+                    }
+                    if (snapshot.version() == seen) {
+                        os.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                        os.flush();
+                    } else if (snapshot.progress() != null) {
+                        sendEvent(os, "progress", gson.toJson(snapshot.progress()));
+                    }
+                    seen = snapshot.version();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void sendEvent(OutputStream os, String event, String json) throws IOException {
+            os.write(("event: " + event + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+            os.flush();
+        }
+    }
+
+    /** Serves Metrics in the Prometheus text format, for a scraper to GET. */
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"error\":\"GET the metrics\"}");
+                return;
+            }
+            byte[] body = Metrics.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    /**
+     * Analyzes the positions in the request body, one EPD or FEN per line, with
+     * ?depth=N and/or ?movetime=MS per position (default depth 8; movetime 1000 by default, at most 10000).
+     * The response is newline-delimited JSON: one BatchAnalyzer.Result per position in input
+     * order, written as soon as it is ready, then a last line with the BatchAnalyzer.Summary.
+     * Neither the body nor the results are held in memory as a whole.
+     */
+    static class AnalyzeHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptionsRequest(exchange);
+                return;
+            }
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"error\":\"POST the positions\"}");
+                return;
+            }
+            Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
+            SearchLimits limits;
+            try {
+                limits = BatchAnalyzer.parseLimits(params.get("depth"), params.get("movetime"));
+            } catch (IllegalArgumentException e) {
+                limits = null;
+            }
+            if (limits == null || limits.moveTimeMillis() > AI_MAX_MOVE_TIME_MS) {
+                sendResponse(exchange, 400, "{\"error\":\"Invalid depth or movetime\"}");
+                return;
+            }
+            // Every position gets a time limit, as for /move: a depth alone could search for hours.
+            if (limits.moveTimeMillis() == 0) {
+                limits = new SearchLimits(limits.depth(), AI_MOVE_TIME_MS, 0);
+            }
+
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            BatchAnalyzer analyzer = new BatchAnalyzer(analysisPool, ANALYSIS_THREADS, limits);
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+                 OutputStream os = exchange.getResponseBody()) {
+                BatchAnalyzer.Summary summary = analyzer.analyze(in, result -> writeLine(os, gson.toJson(result)));
+                writeLine(os, gson.toJson(summary));
+            } catch (UncheckedIOException e) {
+                // The client went away; the positions still in flight finish on their own.
+            }
+        }
+
+        private static void writeLine(OutputStream os, String json) {
+            try {
+                os.write((json + "\n").getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
     }
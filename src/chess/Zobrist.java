@@ -0,0 +1,40 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist.java
+ * Random keys for Zobrist hashing of positions. A position's key is the XOR of the key
+ * of every (piece, square) pair on the board, the castling rights, the en passant file
+ * and the side to move.
+ * The keys come from a fixed seed so a position hashes the same in every run.
+ */
+public final class Zobrist {
+
+    /** PIECE_SQUARE[piece.ordinal()][sq] */
+    public static final long[][] PIECE_SQUARE = new long[Piece.values().length][64];
+    /** Indexed by the 4-bit castling rights mask (see Board.castlingRights). */
+    public static final long[] CASTLING = new long[16];
+    /** Indexed by the file of the en passant square, when there is one. */
+    public static final long[] EN_PASSANT_FILE = new long[8];
+    public static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C0FFEEL);
+        for (long[] squares : PIECE_SQUARE) {
+            for (int sq = 0; sq < 64; sq++) {
+                squares[sq] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+}